@@ -1,163 +1,781 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class AlphaBeta {
 
-    static Coordinates bestMove = new Coordinates(0, 0);
+    // Score of six in a row, less the depth it was found at so quicker wins are preferred
+    static final int WIN_SCORE = 10000;
 
-    public static int minMax(GameBoard gameBoard, String turn, int maxDepth, int depth, int alpha,
-                             int beta, boolean maxPlayer, int index){
+    // Largest evaluation of a position that is not won
+    static final int MAX_EVALUATION = WIN_SCORE / 2;
 
-        // If its a terminal node return the utility value
-        if(gameBoard.isGameOver() || depth==maxDepth){
-            return utilityScore(gameBoard, turn, maxPlayer);
+    // Half the width of the window around the expected score that an iteration starts with
+    static final int ASPIRATION_WINDOW = 50;
+
+    // A pair is packed into one int as first tile << 16 | second tile, tiles are y * boardSize + x
+    static final int NO_TILE = 0xFFFF;
+    private static final int NO_PAIR = -1;
+    private static final int NO_SCORE = Integer.MIN_VALUE;
+
+    // Best two stones found at the root by the last search, in array coordinates. null if it was stopped before it
+    // searched a single pair
+    Move bestMove;
+
+    // Best pair found at the root so far, only turned into bestMove once the search is done so it never allocates
+    private int rootPair = NO_PAIR;
+
+    // Depth (in turns) of the last iteration iterativeDeepening() completed and its principal variation
+    int depthReached;
+    int[] principalVariation = new int[0];
+
+    // Shared with the other threads searching the same position
+    private final TranspositionTable table;
+    private final AtomicBoolean stop;
+    private final EvaluationCache evaluationCache;
+
+    private final MoveOrdering ordering = new MoveOrdering();
+
+    // Search every pair after the first with a null window and only search it again with the full window if it
+    // beats the best so far, and start every iteration with a window of aspirationWindow on either side of the
+    // expected score (0 for the full window). Turning both off gives the plain alpha beta search
+    boolean principalVariationSearch = true;
+    int aspirationWindow = ASPIRATION_WINDOW;
+
+    // Checking the clock is slow compared to a node so it is only read every NODES_PER_TIME_CHECK nodes. A node on a
+    // large board can take 50 microseconds so more would let a search run tens of milliseconds over its time
+    private static final int NODES_PER_TIME_CHECK = 64;
+    private long deadline = Long.MAX_VALUE;
+    private boolean timeUp;
+
+    // Work done by the last call to iterativeDeepening
+    final SearchStats stats = new SearchStats();
+
+    // The score of a node also depends on whose turn it is so that is mixed into the board hash
+    private static final long[] NODE_KEYS = new long[2];
+
+    static {
+        Random random = new Random(0);
+        for(int i=0; i<NODE_KEYS.length; i++){
+            NODE_KEYS[i] = random.nextLong();
+        }
+    }
+
+    // Best pair found at every depth, the first stone is stored in the transposition table with the score
+    private int[] bestPairs = new int[0];
+
+    // Triangular table of the best line found below every depth, pvTable[depth] is only valid up to pvLength[depth]
+    private int[][] pvTable = new int[0][0];
+    private int[] pvLength = new int[0];
+
+    // Pairs generated for every depth. The board is changed in place while a node loops over its children so each
+    // depth needs its own buffer, reused between searches to avoid allocating per node
+    private int[][] pairBuffers = new int[0][0];
+
+    // First stones of a node and their position in that list (0 if not a first stone), used to skip a pair that
+    // was already generated in the other order
+    private int[][] firstBuffers = new int[0][0];
+    private int[][] firstOrder = new int[0][0];
+
+    // Tiles of a node that block or complete a threat
+    private boolean[][] threatTiles = new boolean[0][0];
+
+    // Pairs of a symmetric node sorted with their smaller tile first
+    private int[] symmetryKeys = new int[0];
+
+    /**
+     * Create the search state for one thread
+     * @param table Transposition table, can be shared with other threads
+     * @param stop Set by another thread to end the search early
+     */
+    AlphaBeta(TranspositionTable table, AtomicBoolean stop){
+        this(table, stop, null);
+    }
+
+    /**
+     * Create the search state for one thread
+     * @param table Transposition table, can be shared with other threads
+     * @param stop Set by another thread to end the search early
+     * @param evaluationCache Cache of leaf evaluations, can be shared with other threads. null to not cache them
+     */
+    AlphaBeta(TranspositionTable table, AtomicBoolean stop, EvaluationCache evaluationCache){
+        this.table = table;
+        this.stop = stop;
+        this.evaluationCache = evaluationCache;
+    }
+
+    /**
+     * Search one turn deeper every iteration until the time runs out. The move from the last completed iteration
+     * is left in bestMove, the move ordering from the transposition table makes each iteration cheap to repeat.
+     * bestMove is reset first and stays null if the search is stopped before it has searched a pair
+     * @param gameBoard Board being played, only this thread may use it during the search
+     * @param turn Name of the players turn. B for black and W for white
+     * @param firstDepth Depth of the first iteration
+     * @param maxDepth Deepest iteration to run even if there is time left
+     * @param deadline System.nanoTime() at which the search has to stop
+     * @return Score of the last completed iteration
+     */
+    int iterativeDeepening(GameBoard gameBoard, String turn, int firstDepth, int maxDepth, long deadline){
+        this.deadline = deadline;
+        timeUp = false;
+        stats.reset(maxDepth);
+
+        int completedPair = NO_PAIR;
+        rootPair = NO_PAIR;
+        bestMove = null;
+        int score = 0;
+
+        // Score of the iteration before the last, the last one ended on the other player's turn
+        int parityScore = NO_SCORE;
+        depthReached = 0;
+        principalVariation = new int[0];
+        ordering.newSearch(maxDepth, gameBoard.boardSize);
+
+        for(int depth=firstDepth; depth<=maxDepth; depth++){
+            long iterationStart = System.nanoTime();
+            long nodesBefore = stats.nodes;
+            int val = aspirationSearch(gameBoard, turn, depth, parityScore);
+
+            // An unfinished iteration has not looked at every reply so its move can't be trusted
+            if(timeUp){
+                break;
+            }
+            long iterationEnd = System.nanoTime();
+            stats.iterationDone(depth, iterationEnd - iterationStart, nodesBefore);
+
+            completedPair = rootPair;
+            parityScore = depthReached > 0 ? score : NO_SCORE;
+            score = val;
+            depthReached = depth;
+            principalVariation = Arrays.copyOf(pvTable[0], pvLength[0]);
+
+            // Searching deeper won't change a forced win or loss
+            if(Math.abs(score) >= WIN_SCORE - maxDepth){
+                break;
+            }
+
+            // The next iteration takes longer than this one, one that can't finish would only be thrown away
+            if(deadline != Long.MAX_VALUE && deadline - iterationEnd < iterationEnd - iterationStart){
+                break;
+            }
         }
 
-        if(maxPlayer){
-            return getMax(gameBoard, turn, maxDepth, depth, alpha, beta, index);
+        if(completedPair != NO_PAIR){
+            bestMove = toMove(completedPair, gameBoard.boardSize);
+        } else if(rootPair != NO_PAIR){
+            bestMove = toMove(rootPair, gameBoard.boardSize);
+        }
+
+        this.deadline = Long.MAX_VALUE;
+        timeUp = false;
+        return score;
+    }
 
-        } else{
-            return getMin(gameBoard, turn, maxDepth, depth, alpha, beta, index);
+    /**
+     * Search the root with a narrow window around the expected score. Most iterations end close to the iteration
+     * two turns shallower, which ended on the same player's turn, and the narrow window cuts off more. A score
+     * outside the window is only a bound so the root is searched again with that side of the window opened
+     * @param gameBoard Board being played
+     * @param turn Name of the players turn. B for black and W for white
+     * @param depth Depth of the iteration
+     * @param expectedScore Score of the iteration two turns shallower or NO_SCORE for the full window
+     * @return Score of the position
+     */
+    private int aspirationSearch(GameBoard gameBoard, String turn, int depth, int expectedScore){
+        int alpha = -WIN_SCORE - 1;
+        int beta = WIN_SCORE + 1;
+        if(expectedScore != NO_SCORE && aspirationWindow > 0 && Math.abs(expectedScore) < MAX_EVALUATION){
+            alpha = expectedScore - aspirationWindow;
+            beta = expectedScore + aspirationWindow;
         }
 
+        while(true){
+            int val = negamax(gameBoard, turn, depth, 0, alpha, beta);
+            if(timeUp){
+                return val;
+            }
+
+            if(val <= alpha && alpha > -WIN_SCORE - 1){
+                alpha = -WIN_SCORE - 1;
+            } else if(val >= beta && beta < WIN_SCORE + 1){
+                beta = WIN_SCORE + 1;
+            } else {
+                return val;
+            }
+            stats.aspirationResearches++;
+        }
     }
 
-    private static int getMax(GameBoard gameBoard, String turn, int maxDepth, int depth, int alpha, int beta, int index){
+    /**
+     * Alpha beta search where every move is a full Connect6 turn of two stones. Every node is the start of a turn,
+     * the player to move has both stones left and the pairs place them both, so the player to move always switches
+     * from a node to its children. Scores are for the player to move and negated on the way up
+     * @param gameBoard Board being played
+     * @param turn Name of the player to move. B for black and W for white
+     * @param maxDepth Number of turns to search
+     * @param depth Number of turns played so far
+     * @param alpha Score the player to move is already guaranteed
+     * @param beta Score the opponent is already guaranteed, as seen by the player to move
+     * @return Score of the position for the player to move
+     */
+    int negamax(GameBoard gameBoard, String turn, int maxDepth, int depth, int alpha, int beta){
+
+        if(depth == 0){
+            ensureBuffers(maxDepth, gameBoard.boardSize);
+        }
+        pvLength[depth] = 0;
+
+        if(++stats.nodes % NODES_PER_TIME_CHECK == 0){
+            checkTime();
+        }
+        if(timeUp){
+            return 0;
+        }
+
+        // If its a terminal node return the utility value
+        if(gameBoard.isGameOver() || depth==maxDepth){
+            stats.leaves++;
+            return utilityScore(gameBoard, turn, depth);
+        }
+
+        // Rotated and mirrored positions share one entry, its move is stored turned the same way as the position
+        int symmetry = gameBoard.canonicalSymmetry();
+        long key = gameBoard.hashUnder(symmetry) ^ NODE_KEYS[turn.equals("B") ? 1 : 0];
+        long entry = table.probe(key);
+        int hashMove = TranspositionTable.NO_MOVE;
+
+        if(entry != 0){
+            hashMove = TranspositionTable.move(entry);
+            if(hashMove != TranspositionTable.NO_MOVE){
+                hashMove = gameBoard.symmetryTiles[Symmetry.inverse(symmetry)][hashMove];
+            }
+
+            // The root always has to be searched to find the move to play
+            if(depth > 0 && TranspositionTable.depth(entry) >= maxDepth - depth){
+                int score = fromTableScore(TranspositionTable.score(entry), depth);
+                int bound = TranspositionTable.bound(entry);
+
+                if(bound == TranspositionTable.EXACT){
+                    stats.tableCutoffs++;
+                    return score;
+                } else if(bound == TranspositionTable.LOWER_BOUND){
+                    alpha = Math.max(alpha, score);
+                } else {
+                    beta = Math.min(beta, score);
+                }
+                if(beta <= alpha){
+                    stats.tableCutoffs++;
+                    return score;
+                }
+            }
+        }
+
+        int pairCount = generatePairs(gameBoard, turn, depth, hashMove);
 
-        int best = Integer.MIN_VALUE;
-        boolean maxPlayer = false;
+        // Generating the pairs of a node can take milliseconds on a large board, as long as many nodes
+        checkTime();
 
-        for(Coordinates move: gameBoard.availableMoves){
+        // Make sure there is a legal move to play even if the search is interrupted
+        if(depth == 0 && pairCount > 0){
+            rootPair = pairBuffers[0][0];
+        }
 
-            // Connect6 each player has two turns before alternating so do the same thing for getMax
-            if(index % 2 == 0){
-                turn = opponentTurn(turn);
-                maxPlayer = true;
+        int windowStart = alpha;
+        int best = -WIN_SCORE - 1;
+        bestPairs[depth] = NO_TILE << 16;
+        int[] pairs = pairBuffers[depth];
+        String opponent = BitBoard.opponentTurn(turn);
+
+        for(int i=0; i<pairCount; i++){
+            playPair(gameBoard, pairs[i], turn);
+            int val;
+            if(i == 0 || !principalVariationSearch){
+                val = -negamax(gameBoard, opponent, maxDepth, depth+1, -beta, -alpha);
+            } else {
+                // Proving a pair is no better than alpha only needs a null window, search again if it is better
+                val = -negamax(gameBoard, opponent, maxDepth, depth+1, -alpha - 1, -alpha);
+                if(val > alpha && val < beta && !timeUp){
+                    stats.researches++;
+                    val = -negamax(gameBoard, opponent, maxDepth, depth+1, -beta, -alpha);
+                }
             }
+            undoPair(gameBoard, pairs[i]);
 
-            String [][] boardCopy = GameBoard.copyBoard(gameBoard.board);
-            boardCopy[move.y][move.x] = turn;
-            GameBoard childBoard = new GameBoard(boardCopy, gameBoard.availableMoves);
-            int val = minMax(childBoard, turn, maxDepth,depth+1, alpha, beta, maxPlayer, index++);
+            if(timeUp){
+                break;
+            }
 
             if(val > best){
                 best = val;
-                bestMove = new Coordinates(move.x, move.y);
+                bestPairs[depth] = pairs[i];
+                updatePrincipalVariation(depth, pairs[i]);
+
+                if(depth == 0){
+                    rootPair = pairs[i];
+                }
             }
 
             alpha = Math.max(alpha, best);
 
             // Pruning
             if(beta <= alpha){
+                ordering.cutoff(pairs[i], depth, BitBoard.colour(turn), maxDepth - depth);
+                stats.cutoffs++;
+                if(i == 0){
+                    stats.firstMoveCutoffs++;
+                }
                 break;
             }
         }
 
+        // The score of an interrupted search is not a real bound
+        if(timeUp){
+            return best;
+        }
+
+        int bound = TranspositionTable.EXACT;
+        if(best <= windowStart){
+            bound = TranspositionTable.UPPER_BOUND;
+        } else if(best >= beta){
+            bound = TranspositionTable.LOWER_BOUND;
+        }
+        int bestFirst = bestPairs[depth] >>> 16;
+        int storedMove = TranspositionTable.NO_MOVE;
+        if(bestFirst != NO_TILE){
+            storedMove = gameBoard.symmetryTiles[symmetry][bestFirst];
+        }
+        table.store(key, maxDepth - depth, bound, toTableScore(best, depth), storedMove);
+
         return best;
     }
 
-    private static int getMin(GameBoard gameBoard, String turn, int maxDepth, int depth, int alpha, int beta, int index){
-        int best = Integer.MAX_VALUE;
-        boolean maxPlayer = true;
+    /**
+     * Count the positions the search reaches at a depth when nothing is pruned, walking the same pairs it generates.
+     * A game that ends above the depth counts as one position. Perft checks this against its own count
+     * @param gameBoard Board to count from, it is left as it was
+     * @param turn Name of the player to move. B for black and W for white
+     * @param maxDepth Number of turns to play
+     * @return Number of positions
+     * @throws IllegalStateException If a generated pair is illegal or generated twice
+     */
+    long perft(GameBoard gameBoard, String turn, int maxDepth){
+        ensureBuffers(maxDepth, gameBoard.boardSize);
+        ordering.newSearch(maxDepth, gameBoard.boardSize);
+        return perft(gameBoard, turn, maxDepth, 0);
+    }
+
+    private long perft(GameBoard gameBoard, String turn, int maxDepth, int depth){
+        if(gameBoard.isGameOver() || depth == maxDepth){
+            return 1;
+        }
 
-        for(Coordinates move: gameBoard.availableMoves){
+        long positions = 0;
+        int pairCount = generatePairs(gameBoard, turn, depth, TranspositionTable.NO_MOVE);
+        int[] pairs = pairBuffers[depth];
+        checkPairs(gameBoard, turn, pairs, pairCount);
+        for(int i=0; i<pairCount; i++){
+            playPair(gameBoard, pairs[i], turn);
+            positions += perft(gameBoard, BitBoard.opponentTurn(turn), maxDepth, depth + 1);
+            undoPair(gameBoard, pairs[i]);
+        }
+        return positions;
+    }
 
-            // Connect6 each player has two turns before alternating so do the same thing for getMin
-            if(index % 2 == 0){
-                turn = opponentTurn(turn);
-                maxPlayer = false;
+    /**
+     * Make sure every pair can be played in its order and no two pairs place the same stones
+     * @throws IllegalStateException If a pair is illegal or there twice
+     */
+    private static void checkPairs(GameBoard gameBoard, String turn, int[] pairs, int pairCount){
+        int[] stones = new int[pairCount];
+        for(int i=0; i<pairCount; i++){
+            int first = pairs[i] >>> 16;
+            int second = pairs[i] & 0xFFFF;
+
+            boolean illegal = gameBoard.isIllegalMove(first);
+            if(!illegal && second != NO_TILE){
+                gameBoard.play(first, turn);
+                illegal = !gameBoard.isGameOver() && gameBoard.isIllegalMove(second);
+                gameBoard.undo();
+            }
+            if(illegal){
+                throw new IllegalStateException("Generated an illegal pair " + pairName(pairs[i], gameBoard.boardSize));
             }
+            stones[i] = second == NO_TILE ? pairs[i] : (Math.min(first, second) << 16) | Math.max(first, second);
+        }
 
-            String [][] boardCopy = GameBoard.copyBoard(gameBoard.board);
-            boardCopy[move.y][move.x] = turn;
-            GameBoard childBoard = new GameBoard(boardCopy, gameBoard.availableMoves);
+        Arrays.sort(stones);
+        for(int i=1; i<pairCount; i++){
+            if(stones[i] == stones[i - 1]){
+                throw new IllegalStateException("Generated a pair twice " + pairName(stones[i], gameBoard.boardSize));
+            }
+        }
+    }
 
-            int val = minMax(childBoard, turn, maxDepth,depth+1, alpha, beta, maxPlayer, index++);
+    /**
+     * Score a position with plain negamax over the same pairs, without pruning or the transposition table. The
+     * search has to find the same score however it prunes, orders and reuses work
+     * @param gameBoard Board to score, it is left as it was
+     * @param turn Name of the player to move. B for black and W for white
+     * @param maxDepth Number of turns to search
+     * @return Score of the position for the player to move
+     */
+    int referenceScore(GameBoard gameBoard, String turn, int maxDepth){
+        ensureBuffers(maxDepth, gameBoard.boardSize);
+        ordering.newSearch(maxDepth, gameBoard.boardSize);
+        return referenceScore(gameBoard, turn, maxDepth, 0);
+    }
 
-            if (val < best){
-                best = val;
-                bestMove = new Coordinates(move.x, move.y);
-            }
+    private int referenceScore(GameBoard gameBoard, String turn, int maxDepth, int depth){
+        if(gameBoard.isGameOver() || depth == maxDepth){
+            return utilityScore(gameBoard, turn, depth);
+        }
 
-            beta = Math.min(beta, best);
+        int best = -WIN_SCORE - 1;
+        int pairCount = generatePairs(gameBoard, turn, depth, TranspositionTable.NO_MOVE);
+        int[] pairs = pairBuffers[depth];
+        for(int i=0; i<pairCount; i++){
+            playPair(gameBoard, pairs[i], turn);
+            best = Math.max(best, -referenceScore(gameBoard, BitBoard.opponentTurn(turn), maxDepth, depth + 1));
+            undoPair(gameBoard, pairs[i]);
+        }
+        return best;
+    }
 
-            // Pruning
-            if(beta <= alpha){
-                break;
+    /**
+     * Generate the pairs of stones worth searching. The first stone can be any available move, the second has to
+     * be on a line within reach of the first, close to it, or one of the two stones has to block or complete a
+     * threat. Pairs already generated in the other order are skipped. The pairs are returned in search order
+     * @param gameBoard Board being played
+     * @param turn Name of the player to move. B for black and W for white
+     * @param depth Number of turns played so far
+     * @param hashMove First stone of the best pair found for this position before or NO_MOVE
+     * @return Number of pairs in the buffer for the depth
+     */
+    private int generatePairs(GameBoard gameBoard, String turn, int depth, int hashMove){
+        int boardSize = gameBoard.boardSize;
+        int colour = BitBoard.colour(turn);
+        int[] firsts = firstBuffers[depth];
+        int[] order = firstOrder[depth];
+        boolean[] threats = threatTiles[depth];
+        PatternEvaluator patterns = gameBoard.patterns;
+        boolean anyThreats = patterns.threats(BitBoard.BLACK) + patterns.threats(BitBoard.WHITE) > 0;
+
+        int firstCount = gameBoard.availableMoves.size();
+        for(int i=0; i<firstCount; i++){
+            firsts[i] = gameBoard.availableMoves.get(i);
+        }
+
+        for(int i=0; i<firstCount; i++){
+            int tile = firsts[i];
+            order[tile] = i + 1;
+            threats[tile] = anyThreats && patterns.isThreatTile(tile % boardSize, tile / boardSize);
+        }
+
+        int pairCount = 0;
+        for(int i=0; i<firstCount; i++){
+            int first = firsts[i];
+            int firstX = first % boardSize;
+            int firstY = first / boardSize;
+
+            gameBoard.play(firstX, firstY, turn);
+            boolean won = gameBoard.hasSix(colour);
+
+            if(gameBoard.availableMoves.isEmpty()){
+                pairCount = addPair(depth, pairCount, first, NO_TILE);
+            } else if(won){
+                // The first stone already ends the game, any tile will do for the second
+                pairCount = addPartner(depth, pairCount, gameBoard, order, i, first);
+            } else {
+                int pairsBefore = pairCount;
+
+                for(int j=0; j<gameBoard.availableMoves.size(); j++){
+                    int second = gameBoard.availableMoves.get(j);
+
+                    // Already generated with this tile as the first stone
+                    if(order[second] != 0 && order[second] < i + 1){
+                        continue;
+                    }
+
+                    // Tiles that only became available with the first stone are next to it so always related
+                    boolean threatPair = threats[first] || (order[second] != 0 && threats[second]);
+                    if(threatPair || related(firstX, firstY, second % boardSize, second / boardSize)){
+                        pairCount = addPair(depth, pairCount, first, second);
+                    }
+                }
+
+                // Late in the game nothing may be related, every stone still needs a partner to be playable
+                if(pairCount == pairsBefore){
+                    pairCount = addPartner(depth, pairCount, gameBoard, order, i, first);
+                }
             }
+
+            gameBoard.undo();
         }
-        return best;
+
+        // In a symmetric position a pair and its mirror image lead to the same game, only one of them is searched
+        pairCount = dropSymmetricPairs(gameBoard, depth, pairCount);
+
+        ordering.order(pairBuffers[depth], pairCount, depth, colour, hashMove, threats);
+
+        for(int i=0; i<firstCount; i++){
+            order[firsts[i]] = 0;
+            threats[firsts[i]] = false;
+        }
+
+        return pairCount;
     }
 
-    private static int utilityScore(GameBoard gameBoard, String turn, boolean maxPlayer){
+    /**
+     * Remove the pairs that are a symmetry of another pair of the node, for the symmetries that leave the position
+     * as it is. Only the opening and positions that happen to be symmetric have any
+     * @param gameBoard Board being played
+     * @param depth Depth of the node
+     * @param pairCount Number of pairs in the buffer for the depth
+     * @return Number of pairs left
+     */
+    private int dropSymmetricPairs(GameBoard gameBoard, int depth, int pairCount){
+        int symmetries = 0;
+        for(int symmetry=1; symmetry<Symmetry.COUNT; symmetry++){
+            if(gameBoard.hashUnder(symmetry) == gameBoard.hash){
+                symmetries |= 1 << symmetry;
+            }
+        }
+        if(symmetries == 0){
+            return pairCount;
+        }
 
-        int utility = 0;
-        Score score = maxScore(gameBoard.board, turn);
-        boolean canWin = (score.maxInARow + score.surroundingBlanks) >= 6;
+        int[] pairs = pairBuffers[depth];
+        if(symmetryKeys.length < pairCount){
+            symmetryKeys = new int[pairs.length];
+        }
+        for(int i=0; i<pairCount; i++){
+            symmetryKeys[i] = unorderedPair(pairs[i]);
+        }
+        Arrays.sort(symmetryKeys, 0, pairCount);
+
+        // Keep a pair unless one of its images is a smaller pair that is also in the list
+        int kept = 0;
+        for(int i=0; i<pairCount; i++){
+            int pair = pairs[i];
+            int key = unorderedPair(pair);
+            boolean duplicate = false;
+
+            for(int symmetry=1; symmetry<Symmetry.COUNT && !duplicate; symmetry++){
+                if((symmetries & (1 << symmetry)) != 0){
+                    int[] tiles = gameBoard.symmetryTiles[symmetry];
+                    int second = pair & 0xFFFF;
+                    int secondImage = second == NO_TILE ? second : tiles[second];
+                    int image = unorderedPair((tiles[pair >>> 16] << 16) | secondImage);
+                    duplicate = image < key && Arrays.binarySearch(symmetryKeys, 0, pairCount, image) >= 0;
+                }
+            }
 
-        // May have to adjust these scores later
-        if(canWin){
-            switch (score.maxInARow){
-                case 6:
-                    utility = 500;
-                    break;
-                case 5:
-                    utility = 50;
-                    break;
-                case 4:
-                    utility = 40;
-                    break;
-                case 3:
-                    utility = 30;
-                    break;
-                case 2:
-                    utility = 20;
-                    break;
-                case  1:
-                    utility = 10;
-                    break;
+            if(!duplicate){
+                pairs[kept++] = pair;
             }
         }
+        return kept;
+    }
 
-        // Return the opposite score for the opponent's turn
-        if(!maxPlayer){
-            utility *= -1;
+    /**
+     * The pair with its smaller tile first, the same for both orders of the stones
+     */
+    private static int unorderedPair(int pair){
+        int first = pair >>> 16;
+        int second = pair & 0xFFFF;
+        if(second == NO_TILE || first < second){
+            return pair;
         }
+        return (second << 16) | first;
+    }
 
-        return utility;
+    /**
+     * Check if two stones work together, either on the same line close enough to be part of the same six or
+     * within two tiles of each other
+     */
+    private static boolean related(int x1, int y1, int x2, int y2){
+        int dx = Math.abs(x1 - x2);
+        int dy = Math.abs(y1 - y2);
+        int distance = Math.max(dx, dy);
+        boolean sameLine = dx == 0 || dy == 0 || dx == dy;
+        return distance <= 2 || (sameLine && distance <= 5);
     }
 
     /**
-     * Compute the best score (most in a row) of the horizontal, vertical, and diagonals
-     * @param board 2d array board being played
-     * @param turn Name of the players turn. B for black and W for white
-     * @return Vest score (most in a row) of the horizontal, vertical, and diagonals
+     * The best line from a node is its best pair followed by the best line of the child it leads to
+     * @param depth Depth of the node
+     * @param pair Best pair found so far at the node
      */
-    private static Score maxScore(String [][] board, String turn){
-        Score horizontalScore = EvaluateBoard.horizontalScore(board, turn);
-        Score verticalScore = EvaluateBoard.verticalScore(board, turn);
-        Score diagonalScore = EvaluateBoard.diagonalScore(board, turn);
+    private void updatePrincipalVariation(int depth, int pair){
+        int childLength = pvLength[depth + 1];
+        pvTable[depth][0] = pair;
+        System.arraycopy(pvTable[depth + 1], 0, pvTable[depth], 1, childLength);
+        pvLength[depth] = childLength + 1;
+    }
 
-        if(horizontalScore.maxInARow > verticalScore.maxInARow){
-            if(horizontalScore.maxInARow > diagonalScore.maxInARow){
-                return horizontalScore;
+    /**
+     * Pair the first stone with any available tile, skipping the pairs an earlier first stone already generated
+     * with it. No pair is added if every tile already has one
+     * @param order Position plus one of every first stone in the list of first stones, 0 for other tiles
+     * @param index Position of the first stone in that list
+     * @return Number of pairs in the buffer for the depth
+     */
+    private int addPartner(int depth, int pairCount, GameBoard gameBoard, int[] order, int index, int first){
+        for(int j=0; j<gameBoard.availableMoves.size(); j++){
+            int second = gameBoard.availableMoves.get(j);
+            if(order[second] == 0 || order[second] > index + 1 || !generated(depth, pairCount, second, first)){
+                return addPair(depth, pairCount, first, second);
             }
-        } else {
-            if(verticalScore.maxInARow > diagonalScore.maxInARow){
-                return verticalScore;
+        }
+        return pairCount;
+    }
+
+    private boolean generated(int depth, int pairCount, int first, int second){
+        int pair = (first << 16) | second;
+        for(int i=0; i<pairCount; i++){
+            if(pairBuffers[depth][i] == pair){
+                return true;
             }
         }
+        return false;
+    }
+
+    private int addPair(int depth, int pairCount, int first, int second){
+        if(pairCount == pairBuffers[depth].length){
+            pairBuffers[depth] = Arrays.copyOf(pairBuffers[depth], pairCount * 2);
+        }
+        pairBuffers[depth][pairCount] = (first << 16) | second;
+        return pairCount + 1;
+    }
+
+    private static void playPair(GameBoard gameBoard, int pair, String turn){
+        int first = pair >>> 16;
+        int second = pair & 0xFFFF;
+
+        gameBoard.play(first, turn);
+        if(second != NO_TILE){
+            gameBoard.play(second, turn);
+        }
+    }
 
-        return diagonalScore;
+    private static void undoPair(GameBoard gameBoard, int pair){
+        if((pair & 0xFFFF) != NO_TILE){
+            gameBoard.undo();
+        }
+        gameBoard.undo();
     }
 
     /**
-     * Alternate the turns
-     * @param turn Name of the players turn. B for black and W for white
-     * @return B=>W and W=>B
+     * @return The pair as x1 y1 x2 y2 in array coordinates, for messages
      */
-    private static String opponentTurn(String turn){
-        if(turn.equals("B")){
-            return "W";
-        } else {
-            return "B";
+    private static String pairName(int pair, int boardSize){
+        Move move = toMove(pair, boardSize);
+        return move.x1 + " " + move.y1 + " " + move.x2 + " " + move.y2;
+    }
+
+    /**
+     * Win and loss scores count the turns from the root, the table keeps them counted from the node so they are still
+     * right when the position is reached at another depth, in a later search or from another root
+     * @param score Score of the node
+     * @param depth Depth of the node
+     * @return Score to store
+     */
+    private static int toTableScore(int score, int depth){
+        if(score > MAX_EVALUATION){
+            return score + depth;
+        } else if(score < -MAX_EVALUATION){
+            return score - depth;
+        }
+        return score;
+    }
+
+    /**
+     * Turn a score from the table back into one counted from the root, the inverse of toTableScore()
+     */
+    private static int fromTableScore(int score, int depth){
+        if(score > MAX_EVALUATION){
+            return score - depth;
+        } else if(score < -MAX_EVALUATION){
+            return score + depth;
+        }
+        return score;
+    }
+
+    private void checkTime(){
+        if(System.nanoTime() > deadline || stop.get()){
+            timeUp = true;
+        }
+    }
+
+    /**
+     * Convert a packed pair into a move in array coordinates
+     * @param pair First tile << 16 | second tile
+     * @param boardSize Size of the board
+     * @return Move with both stones, the second is the first again if there was no tile left for it
+     */
+    static Move toMove(int pair, int boardSize){
+        int first = pair >>> 16;
+        int second = pair & 0xFFFF;
+        if(second == NO_TILE){
+            second = first;
+        }
+        return new Move(first % boardSize, first / boardSize, second % boardSize, second / boardSize);
+    }
+
+    /**
+     * Make sure there are buffers for every depth that are large enough for any board position
+     * @param maxDepth Depth the search will go to
+     * @param boardSize Size of the board
+     */
+    private void ensureBuffers(int maxDepth, int boardSize){
+        int tileCount = boardSize * boardSize;
+        if(pairBuffers.length < maxDepth || (pairBuffers.length > 0 && firstOrder[0].length < tileCount)){
+            pairBuffers = new int[maxDepth][tileCount];
+            firstBuffers = new int[maxDepth][tileCount];
+            firstOrder = new int[maxDepth][tileCount];
+            threatTiles = new boolean[maxDepth][tileCount];
+            bestPairs = new int[maxDepth];
+            pvTable = new int[maxDepth + 1][maxDepth + 1];
+            pvLength = new int[maxDepth + 1];
+        }
+    }
+
+    /**
+     * Score a position for a player as the pattern score of their windows minus the opponent's
+     * @param gameBoard Board being played
+     * @param turn Name of the player. B for black and W for white
+     * @param depth Number of turns played to reach the position
+     * @return Utility of the position
+     */
+    private int utilityScore(GameBoard gameBoard, String turn, int depth){
+        int colour = BitBoard.colour(turn);
+        int opponent = 1 - colour;
+
+        if(gameBoard.hasSix(colour)){
+            return WIN_SCORE - depth;
+        } else if(gameBoard.hasSix(opponent)){
+            return depth - WIN_SCORE;
+        }
+
+        // The cache holds black's evaluation under the canonical hash so both colours and all symmetries share it
+        long key = 0;
+        if(evaluationCache != null){
+            key = gameBoard.hashUnder(gameBoard.canonicalSymmetry());
+            int cached = evaluationCache.probe(key);
+            stats.cacheProbes++;
+            if(cached != EvaluationCache.MISS){
+                stats.cacheHits++;
+                return colour == BitBoard.BLACK ? cached : -cached;
+            }
+        }
+
+        // Kept well away from the win scores so a good position is never taken for a forced win
+        int score = gameBoard.patterns.score(BitBoard.BLACK) - gameBoard.patterns.score(BitBoard.WHITE);
+        score = Math.max(-MAX_EVALUATION, Math.min(MAX_EVALUATION, score));
+
+        if(evaluationCache != null){
+            evaluationCache.store(key, score);
         }
+        return colour == BitBoard.BLACK ? score : -score;
     }
 }
@@ -0,0 +1,299 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+Long running analysis service that answers engine queries over a line protocol
+
+Reads one request per line from stdin, or from every client of a socket on localhost, and writes one response
+line per request. Every request starts with an id chosen by the client that is repeated at the start of the
+response, so a client can send many requests without waiting and match the answers up as they arrive. Requests
+for different games run in parallel on a worker pool, the requests for one game run one after the other in the
+order they were sent. Games keep their board and engine, including the transposition table, between requests.
+All coordinates are display coordinates, the same ones Driver uses
+
+Requests
+<id> new <game> <size>                    start a game, replacing one with the same name, the size is 1 to 181
+<id> position <game> <size> [x1 y1 x2 y2]...  start a game from a list of turns, white plays the first one
+<id> play <game> <x1> <y1> <x2> <y2>      play a turn for the player to move
+<id> go <game> <milliseconds> [depth]     search for the player to move, the depth is at least 1 turn
+<id> drop <game>                          forget a game
+<id> quit                                 stop reading requests from this client
+
+Responses
+<id> ok
+<id> move <x1> <y1> <x2> <y2> score <score> depth <turns> nodes <nodes> pv [x1 y1 x2 y2]...
+<id> error <message>
+
+Input arguments
+1. (optional) Number of worker threads, defaults to the number of cores
+2. (optional) Port to listen on at localhost, reads stdin if left out
+
+Example  "java AnalysisServer 4 7600"
+*/
+
+
+class AnalysisServer {
+
+    private static final int MAX_DEPTH = 10;
+    private static final int TABLE_SIZE = 1 << 20;
+
+    // Every game searches on one thread, the workers search different games at the same time
+    private static final int SEARCH_THREADS = 1;
+
+    private final Map<String, Game> games = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+
+    /**
+     * Board, engine and player to move of one game. Requests for the game are chained onto tail so they run in
+     * order even though any worker can run them
+     */
+    private static class Game {
+        final GameBoard gameBoard;
+        final Engine engine;
+        String turn = "W";
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        Game(int boardSize){
+            this.gameBoard = new GameBoard(boardSize);
+            this.engine = new Engine(SEARCH_THREADS, TABLE_SIZE);
+        }
+    }
+
+    AnalysisServer(int threads){
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        AnalysisServer server = new AnalysisServer(threads);
+
+        if(args.length > 1){
+            int port = Integer.parseInt(args[1]);
+            try(ServerSocket listener = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())){
+                while(true){
+                    Socket client = listener.accept();
+                    Thread thread = new Thread(() -> server.serveClient(client), "analysis-client");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            }
+        } else {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+            server.serve(in, out);
+            server.workers.shutdown();
+        }
+    }
+
+    private void serveClient(Socket client){
+        try(Socket socket = client;
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.UTF_8), true)){
+            serve(in, out);
+        } catch (IOException e) {
+            System.err.println("Client disconnected: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read requests until the input ends or the client quits, then wait for the answers still being worked on
+     * @param in Requests, one per line
+     * @param out Responses, one per line
+     * @throws IOException If reading the requests fails
+     */
+    void serve(BufferedReader in, PrintWriter out) throws IOException {
+        CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+        String line;
+
+        while((line = in.readLine()) != null){
+            String[] request = line.trim().split("\\s+");
+            if(request.length < 2){
+                if(!line.trim().isEmpty()){
+                    respond(out, request[0], "error expected <id> <command>");
+                }
+                continue;
+            }
+            if(request[1].equals("quit")){
+                break;
+            }
+            pending = CompletableFuture.allOf(pending, submit(request, out));
+        }
+
+        pending.join();
+    }
+
+    /**
+     * Queue a request behind the earlier requests for the same game
+     * @param request Words of the request line
+     * @param out Where the response goes
+     * @return Done once the response is written
+     */
+    private CompletableFuture<Void> submit(String[] request, PrintWriter out){
+        String id = request[0];
+        if(request.length < 3){
+            respond(out, id, "error expected <id> <command> <game>");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String command = request[1];
+        String name = request[2];
+
+        // Starting or dropping a game changes which games exist, that happens right away in request order
+        Game game;
+        try {
+            if(command.equals("new") || command.equals("position")){
+                int boardSize = Integer.parseInt(request[3]);
+                if(boardSize < 1 || boardSize > TranspositionTable.MAX_BOARD_SIZE){
+                    respond(out, id, "error the size has to be between 1 and " + TranspositionTable.MAX_BOARD_SIZE);
+                    return CompletableFuture.completedFuture(null);
+                }
+                Game fresh = new Game(boardSize);
+
+                // The new game takes over the queue of the one it replaces before another client can see it
+                game = games.compute(name, (key, old) -> {
+                    if(old != null){
+                        synchronized (old){
+                            fresh.tail = old.tail.thenRun(old.engine::close);
+                        }
+                    }
+                    return fresh;
+                });
+            } else if(command.equals("drop")){
+                game = games.remove(name);
+            } else {
+                game = games.get(name);
+            }
+        } catch (RuntimeException e) {
+            respond(out, id, "error expected <id> " + command + " <game> <size>");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if(game == null){
+            respond(out, id, "error unknown game " + name);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Game target = game;
+        synchronized (target){
+            target.tail = target.tail.thenRunAsync(() -> respond(out, id, run(target, request)), workers);
+            return target.tail;
+        }
+    }
+
+    /**
+     * Run one request on a game
+     * @param game The game
+     * @param request Words of the request line
+     * @return The response without the id
+     */
+    private static String run(Game game, String[] request){
+        try {
+            switch (request[1]){
+                case "new":
+                    return "ok";
+                case "drop":
+                    game.engine.close();
+                    return "ok";
+                case "position":
+                    for(int i=4; i + 3 < request.length; i += 4){
+                        String error = play(game, request, i);
+                        if(error != null){
+                            return error;
+                        }
+                    }
+                    return (request.length - 4) % 4 == 0 ? "ok" : "error moves need four coordinates";
+                case "play":
+                    String error = play(game, request, 3);
+                    return error == null ? "ok" : error;
+                case "go":
+                    long timeLimit = Long.parseLong(request[3]);
+                    int depth = request.length > 4 ? Integer.parseInt(request[4]) : MAX_DEPTH;
+                    if(timeLimit < 0 || depth <= 0){
+                        return "error the time can not be negative and the depth has to be at least 1";
+                    }
+                    return search(game, timeLimit, depth);
+                default:
+                    return "error unknown command " + request[1];
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return "error malformed request";
+        } catch (RuntimeException e) {
+            // Answered like any other error so the requests queued behind it for the game still run
+            return "error request failed " + e;
+        }
+    }
+
+    /**
+     * Play the turn starting at the given word of the request
+     * @return null if it was played or the error response
+     */
+    private static String play(Game game, String[] request, int start){
+        if(game.gameBoard.isGameOver()){
+            return "error the game is over";
+        }
+
+        Move move = new Move(Integer.parseInt(request[start]), Integer.parseInt(request[start + 1]),
+                Integer.parseInt(request[start + 2]), Integer.parseInt(request[start + 3]));
+        if(game.gameBoard.isIllegalMove(move)){
+            return "error illegal move " + request[start] + " " + request[start + 1] + " " + request[start + 2]
+                    + " " + request[start + 3];
+        }
+
+        game.gameBoard.update(move, game.turn);
+        game.turn = BitBoard.opponentTurn(game.turn);
+        return null;
+    }
+
+    private static String search(Game game, long timeLimit, int maxDepth){
+        if(game.gameBoard.isGameOver()){
+            return "error the game is over";
+        }
+
+        SearchResult result = game.engine.search(game.gameBoard, game.turn, maxDepth, timeLimit);
+        if(result.bestMove == null){
+            return "error no move found in the time";
+        }
+        int boardSize = game.gameBoard.boardSize;
+
+        StringBuilder response = new StringBuilder("move");
+        appendMove(response, result.bestMove, boardSize);
+        response.append(" score ").append(result.score)
+                .append(" depth ").append(result.depth)
+                .append(" nodes ").append(result.nodes)
+                .append(" pv");
+        for(Move move: result.principalVariation){
+            appendMove(response, move, boardSize);
+        }
+        return response.toString();
+    }
+
+    /**
+     * Append a move in array coordinates as display coordinates
+     */
+    private static void appendMove(StringBuilder response, Move move, int boardSize){
+        Coordinates first = Coordinates.toDisplayCoordinates(new Coordinates(move.x1, move.y1), boardSize);
+        Coordinates second = Coordinates.toDisplayCoordinates(new Coordinates(move.x2, move.y2), boardSize);
+        response.append(' ').append(first.x).append(' ').append(first.y)
+                .append(' ').append(second.x).append(' ').append(second.y);
+    }
+
+    private static void respond(PrintWriter out, String id, String response){
+        synchronized (out){
+            out.println(id + " " + response);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Packed bitboard representation of the game board. Each colour is a bitset stored in a long array with an
+ * occupancy mask kept alongside it. Tile (x, y) lives at bit y * stride + x where the stride is one wider than
+ * the board, the extra guard column is always empty so shifting a row never wraps onto the next one
+ */
+class BitBoard {
+
+    static final int BLACK = 0;
+    static final int WHITE = 1;
+
+    // Step along each of the four line directions: horizontal, vertical, diagonal and anti-diagonal
+    static final int[] DX = {1, 0, 1, -1};
+    static final int[] DY = {0, 1, 1, 1};
+
+    final int boardSize;
+    final int stride;
+    final int words;
+
+    final long[][] stones;
+    final long[] occupied;
+    int stoneCount;
+
+    // Scratch buffers for the line detection so checking for a win does not allocate
+    private final int[] directions;
+    private final long[] run;
+    private final long[] shifted;
+    private final long[] four;
+
+    BitBoard(int boardSize){
+        this.boardSize = boardSize;
+        this.stride = boardSize + 1;
+        this.words = (stride * boardSize + 63) / 64;
+        this.stones = new long[2][words];
+        this.occupied = new long[words];
+        this.directions = new int[DX.length];
+        for(int i=0; i<DX.length; i++){
+            directions[i] = DY[i] * stride + DX[i];
+        }
+        this.run = new long[words];
+        this.shifted = new long[words];
+        this.four = new long[words];
+    }
+
+    /**
+     * Convert the turn name used by the players into a colour index
+     * @param turn Name of the players turn. B for black and W for white
+     * @return BLACK or WHITE
+     */
+    static int colour(String turn){
+        return turn.equals("B") ? BLACK : WHITE;
+    }
+
+    /**
+     * Convert a colour index back into the turn name used by the players
+     * @param colour BLACK or WHITE
+     * @return B for black and W for white
+     */
+    static String turn(int colour){
+        return colour == BLACK ? "B" : "W";
+    }
+
+    /**
+     * Alternate the turns
+     * @param turn Name of the players turn. B for black and W for white
+     * @return B=>W and W=>B
+     */
+    static String opponentTurn(String turn){
+        return turn.equals("B") ? "W" : "B";
+    }
+
+    int bitIndex(int x, int y){
+        return y * stride + x;
+    }
+
+    /**
+     * Place a stone on an empty tile
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param colour BLACK or WHITE
+     */
+    void place(int x, int y, int colour){
+        int bit = bitIndex(x, y);
+        long mask = 1L << bit;
+        stones[colour][bit >>> 6] |= mask;
+        occupied[bit >>> 6] |= mask;
+        stoneCount++;
+    }
+
+    /**
+     * Take a stone off the board, the inverse of place
+     * @param x The x coordinate
+     * @param y The y coordinate
+     */
+    void remove(int x, int y){
+        int bit = bitIndex(x, y);
+        long mask = ~(1L << bit);
+        stones[BLACK][bit >>> 6] &= mask;
+        stones[WHITE][bit >>> 6] &= mask;
+        occupied[bit >>> 6] &= mask;
+        stoneCount--;
+    }
+
+    boolean isEmpty(int x, int y){
+        int bit = bitIndex(x, y);
+        return (occupied[bit >>> 6] & (1L << bit)) == 0;
+    }
+
+    boolean hasStone(int x, int y, int colour){
+        int bit = bitIndex(x, y);
+        return (stones[colour][bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    boolean isFull(){
+        return stoneCount == boardSize * boardSize;
+    }
+
+    /**
+     * Value of a tile in the format used for printing
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return E for empty, B for black and W for white
+     */
+    String getTile(int x, int y){
+        if(hasStone(x, y, BLACK)){
+            return "B";
+        } else if(hasStone(x, y, WHITE)){
+            return "W";
+        }
+        return "E";
+    }
+
+    BitBoard copy(){
+        BitBoard copy = new BitBoard(boardSize);
+        System.arraycopy(stones[BLACK], 0, copy.stones[BLACK], 0, words);
+        System.arraycopy(stones[WHITE], 0, copy.stones[WHITE], 0, words);
+        System.arraycopy(occupied, 0, copy.occupied, 0, words);
+        copy.stoneCount = stoneCount;
+        return copy;
+    }
+
+    /**
+     * Count the most in a row of any horizontal, vertical, or diagonal with shift and mask. Each pass keeps the
+     * bits that start a run one longer than the pass before so the number of passes is the longest run
+     * @param colour BLACK or WHITE
+     * @return Most stones in a row
+     */
+    int maxInARow(int colour){
+        int best = 0;
+
+        for(int direction: directions){
+            best = Math.max(best, longestRun(stones[colour], direction));
+            if(best >= 6){
+                return best;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Check for six in a row in any direction without counting the full length of every run
+     * @param colour BLACK or WHITE
+     * @return true if the colour has at least six in a row
+     */
+    boolean hasSixInARow(int colour){
+        for(int direction: directions){
+            long[] bits = stones[colour];
+
+            // run = two in a row, then four, then six
+            shiftRight(bits, direction, shifted);
+            and(bits, shifted, run);
+            shiftRight(run, 2 * direction, shifted);
+            and(run, shifted, four);
+            shiftRight(run, 4 * direction, shifted);
+            and(four, shifted, shifted);
+
+            if(!isZero(shifted)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the stone on a tile is part of six in a row. A stone can only complete six along the four lines
+     * through it, so after placing it this is all that has to be checked and the cost does not depend on the board
+     * size. The guard column ends every walk that would leave the board sideways
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param colour BLACK or WHITE, the colour of the stone on the tile
+     * @return true if the stone is in a run of six or more
+     */
+    boolean makesSix(int x, int y, int colour){
+        long[] bits = stones[colour];
+        int bit = bitIndex(x, y);
+        int limit = words * 64;
+
+        for(int direction: directions){
+            int count = 1;
+            for(int next = bit + direction; count < 6 && next < limit && isSet(bits, next); next += direction){
+                count++;
+            }
+            for(int next = bit - direction; count < 6 && next >= 0 && isSet(bits, next); next -= direction){
+                count++;
+            }
+            if(count >= 6){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSet(long[] bits, int bit){
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private int longestRun(long[] bits, int direction){
+        System.arraycopy(bits, 0, run, 0, words);
+        int length = 0;
+
+        while(!isZero(run)){
+            length++;
+            shiftRight(run, direction, shifted);
+            and(run, shifted, run);
+        }
+        return length;
+    }
+
+    /**
+     * Shift a multi word bitset towards bit 0 so that bit i of the result is bit i + shift of the source
+     * @param source Bitset to shift
+     * @param shift Number of bits
+     * @param result Array to write the shifted bitset into
+     */
+    private void shiftRight(long[] source, int shift, long[] result){
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+
+        for(int i=0; i<words; i++){
+            int from = i + wordShift;
+            long low = from < words ? source[from] : 0L;
+            long high = from + 1 < words ? source[from + 1] : 0L;
+
+            if(bitShift == 0){
+                result[i] = low;
+            } else {
+                result[i] = (low >>> bitShift) | (high << (64 - bitShift));
+            }
+        }
+    }
+
+    private void and(long[] a, long[] b, long[] result){
+        for(int i=0; i<words; i++){
+            result[i] = a[i] & b[i];
+        }
+    }
+
+    private boolean isZero(long[] bits){
+        for(long word: bits){
+            if(word != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,11 +1,11 @@
 class BlackPlayer extends Player {
 
-    BlackPlayer(String playerName, int boardSize, int maxTimePerMove){
-        super(playerName, boardSize);
+    BlackPlayer(String playerName, int boardSize, int maxTimePerMove, int threads){
+        super(playerName, boardSize, maxTimePerMove, threads);
     }
 
     public void update(Move opponentMove){
-        gameBoard.update(opponentMove, "W");
+        opponentMoved(opponentMove, "W");
     }
 
 
@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/*
+Builds an opening book from self-play
+
+Plays games where the engine searches every move of the first turns and records each position with the move it
+found. Game i starts with i % (random turns + 1) random turns, so the first game is the main line and the others
+cover the positions an opponent can steer into. A position already in the book is played from the book instead of
+being searched again
+
+Input arguments
+1. Size of the board
+2. Number of games
+3. Number of turns to record per game, not counting the random ones
+4. Milliseconds the engine searches every move
+5. Book file to write
+6. (optional) Most random turns at the start of a game, defaults to 2
+7. (optional) Number of threads the engine searches with, defaults to the number of cores
+8. (optional) Seed for the random turns, defaults to 1
+
+Example  "java BookBuilder 13 200 4 5000 book-13.bin"
+*/
+
+
+class BookBuilder {
+
+    private static final int MAX_DEPTH = 10;
+    private static final int TABLE_SIZE = 1 << 22;
+    private static final int DEFAULT_RANDOM_TURNS = 2;
+    private static final int DEFAULT_SEED = 1;
+
+    public static void main(String[] args) throws IOException {
+
+        // Parse input arguments
+        int boardSize = Integer.parseInt(args[0]);
+        int games = Integer.parseInt(args[1]);
+        int bookTurns = Integer.parseInt(args[2]);
+        int timePerMove = Integer.parseInt(args[3]);
+        String file = args[4];
+        int randomTurns = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_RANDOM_TURNS;
+        int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 7 ? Long.parseLong(args[7]) : DEFAULT_SEED;
+
+        Engine engine = new Engine(threads, TABLE_SIZE);
+        Map<Long, Integer> bookEntries = new HashMap<>();
+        Random random = new Random(seed);
+
+        for(int game=0; game<games; game++){
+            GameBoard gameBoard = new GameBoard(boardSize);
+
+            // White plays the first turn after the black stone in the middle
+            String turn = "W";
+            for(int i=0; i<game % (randomTurns + 1) && !gameBoard.isGameOver(); i++){
+                int first = gameBoard.availableMoves.get(random.nextInt(gameBoard.availableMoves.size()));
+                gameBoard.play(first % boardSize, first / boardSize, turn);
+                int second = gameBoard.availableMoves.get(random.nextInt(gameBoard.availableMoves.size()));
+                gameBoard.play(second % boardSize, second / boardSize, turn);
+                turn = BitBoard.opponentTurn(turn);
+            }
+
+            int searched = 0;
+            for(int i=0; i<bookTurns && !gameBoard.isGameOver(); i++){
+                int pair = bookMove(bookEntries, gameBoard);
+                if(pair == OpeningBook.NO_MOVE){
+                    Move move = engine.search(gameBoard, turn, MAX_DEPTH, timePerMove).bestMove;
+                    if(move == null){
+                        break;
+                    }
+                    pair = ((move.y1 * boardSize + move.x1) << 16) | (move.y2 * boardSize + move.x2);
+
+                    // A move that wins with its first stone repeats it, there is nothing left to record anyway
+                    if(move.x1 == move.x2 && move.y1 == move.y2){
+                        break;
+                    }
+                    OpeningBook.add(bookEntries, gameBoard, pair);
+                    searched++;
+                }
+
+                gameBoard.play((pair >>> 16) % boardSize, (pair >>> 16) / boardSize, turn);
+                gameBoard.play((pair & 0xFFFF) % boardSize, (pair & 0xFFFF) / boardSize, turn);
+                turn = BitBoard.opponentTurn(turn);
+            }
+
+            System.out.println("Game " + (game + 1) + ": " + searched + " new positions, " + bookEntries.size()
+                    + " in the book");
+        }
+
+        engine.close();
+
+        OpeningBook.write(Paths.get(file), boardSize, bookEntries);
+        System.out.println("Wrote " + bookEntries.size() + " positions to " + file);
+    }
+
+    /**
+     * Move already in the book being built for the position
+     * @param bookEntries Canonical keys and moves collected so far
+     * @param gameBoard Board with the position
+     * @return The move in the board's own orientation or OpeningBook.NO_MOVE
+     */
+    private static int bookMove(Map<Long, Integer> bookEntries, GameBoard gameBoard){
+        int symmetry = gameBoard.canonicalSymmetry();
+        Integer pair = bookEntries.get(gameBoard.hashUnder(symmetry));
+        if(pair == null){
+            return OpeningBook.NO_MOVE;
+        }
+        return Symmetry.transformPair(pair, Symmetry.inverse(symmetry), gameBoard.boardSize);
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Set of the empty tiles worth playing, the ones within a radius of a stone. Every tile keeps a count of the stones
+ * in its neighbourhood so placing or removing a stone only touches that neighbourhood, and the members are kept in a
+ * dense array with the position of every tile so add, remove and contains are all O(1). Tiles are y * boardSize + x
+ *
+ * Removing a stone has to undo the last stone placed. It then restores the members in the exact order they had, so
+ * searching the same position twice walks the tiles in the same order
+ *
+ * Driver only accepts stones next to another stone, so any radius above 1 gives candidates it would reject
+ */
+class CandidateSet {
+
+    // Neighbour tables only depend on the board size and radius so they are shared by every board
+    private static final Map<Integer, int[][]> NEIGHBOUR_TABLES = new ConcurrentHashMap<>();
+
+    private final BitBoard board;
+    private final int boardSize;
+    private final int[][] neighbours;
+
+    // Number of stones within the radius of every tile
+    private final int[] stonesNearby;
+
+    private final int[] members;
+    private final int[] positions;
+    private int size;
+
+    // Position every placed stone's tile had in members before it was taken out, -1 if it was not a member, so
+    // stoneRemoved() can put it back in the same place
+    private final int[] placedPositions;
+    private int placedCount;
+
+    /**
+     * Create the set for the stones already on the board
+     * @param board Board the stones are placed on
+     * @param radius Largest distance (in any direction, diagonals included) from a stone to a candidate
+     */
+    CandidateSet(BitBoard board, int radius){
+        this.board = board;
+        this.boardSize = board.boardSize;
+        this.neighbours = neighbourTable(boardSize, radius);
+
+        int tileCount = boardSize * boardSize;
+        this.stonesNearby = new int[tileCount];
+        this.members = new int[tileCount];
+        this.positions = new int[tileCount];
+        this.placedPositions = new int[tileCount];
+        java.util.Arrays.fill(positions, -1);
+
+        for(int tile=0; tile<tileCount; tile++){
+            if(!board.isEmpty(tile % boardSize, tile / boardSize)){
+                stonePlaced(tile);
+            }
+        }
+    }
+
+    /**
+     * Update the set after a stone was placed on the board
+     * @param tile Tile of the stone
+     */
+    void stonePlaced(int tile){
+        placedPositions[placedCount++] = positions[tile];
+        remove(tile);
+
+        for(int neighbour: neighbours[tile]){
+            stonesNearby[neighbour]++;
+            if(stonesNearby[neighbour] == 1 && board.isEmpty(neighbour % boardSize, neighbour / boardSize)){
+                add(neighbour);
+            }
+        }
+    }
+
+    /**
+     * Update the set after the last stone placed was taken off the board, the exact inverse of stonePlaced
+     * @param tile Tile of the stone
+     */
+    void stoneRemoved(int tile){
+        // The neighbours stonePlaced added are the last members, taking them off in reverse leaves the rest in place
+        int[] tileNeighbours = neighbours[tile];
+        for(int i=tileNeighbours.length - 1; i>=0; i--){
+            int neighbour = tileNeighbours[i];
+            stonesNearby[neighbour]--;
+            if(stonesNearby[neighbour] == 0){
+                remove(neighbour);
+            }
+        }
+
+        // Put the tile back where it was and the member that filled its gap back at the end
+        int position = placedPositions[--placedCount];
+        if(position != -1){
+            if(position < size){
+                int moved = members[position];
+                members[size] = moved;
+                positions[moved] = size;
+            }
+            size++;
+
+            members[position] = tile;
+            positions[tile] = position;
+        }
+    }
+
+    boolean contains(int tile){
+        return positions[tile] != -1;
+    }
+
+    int size(){
+        return size;
+    }
+
+    boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * @param index Position in the set, from 0 to size() - 1. Positions change when the set changes
+     * @return The tile at the position
+     */
+    int get(int index){
+        return members[index];
+    }
+
+    private void add(int tile){
+        if(positions[tile] == -1){
+            positions[tile] = size;
+            members[size++] = tile;
+        }
+    }
+
+    private void remove(int tile){
+        int position = positions[tile];
+        if(position != -1){
+            // Move the last member into the gap
+            int last = members[--size];
+            members[position] = last;
+            positions[last] = position;
+            positions[tile] = -1;
+        }
+    }
+
+    /**
+     * The tiles within the radius of every tile, not including the tile itself
+     * @param boardSize Size of the board
+     * @param radius Largest distance in any direction
+     * @return Neighbours indexed by tile
+     */
+    static int[][] neighbourTable(int boardSize, int radius){
+        return NEIGHBOUR_TABLES.computeIfAbsent(boardSize * 64 + radius, key -> {
+            int[][] table = new int[boardSize * boardSize][];
+
+            for(int y=0; y<boardSize; y++){
+                for(int x=0; x<boardSize; x++){
+                    int[] tiles = new int[(2 * radius + 1) * (2 * radius + 1) - 1];
+                    int count = 0;
+
+                    for(int neighbourY = y - radius; neighbourY <= y + radius; neighbourY++){
+                        for(int neighbourX = x - radius; neighbourX <= x + radius; neighbourX++){
+                            boolean inBounds = neighbourX > -1 && neighbourX < boardSize
+                                    && neighbourY > -1 && neighbourY < boardSize;
+                            if(inBounds && (neighbourX != x || neighbourY != y)){
+                                tiles[count++] = neighbourY * boardSize + neighbourX;
+                            }
+                        }
+                    }
+                    table[y * boardSize + x] = java.util.Arrays.copyOf(tiles, count);
+                }
+            }
+            return table;
+        });
+    }
+}
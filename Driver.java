@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 /*
@@ -9,6 +12,11 @@ Input arguments
 3. First player name
 4. -h for human -c for computer (the white player)
 5. Second player name
+6. (optional) Number of threads each computer player searches with, defaults to the number of cores
+
+Run with -Dconnect6.logSearch=true to print the search statistics after every computer move
+Run with -Dconnect6.book=<file> to play the opening from a book built with BookBuilder
+Run with -Dconnect6.record=<file> to add the game to a game record file when it ends
 
 Example  "java Driver 7 -h Kenan -h Tim"
 */
@@ -16,6 +24,8 @@ Example  "java Driver 7 -h Kenan -h Tim"
 
 class Driver {
     private static final int MAX_TIME_PER_MOVE = 500;
+    private static final boolean LOG_SEARCH = Boolean.getBoolean("connect6.logSearch");
+    private static final String RECORD_FILE = System.getProperty("connect6.record");
     private static Scanner sc = new Scanner(System.in);
 
     public static void main(String[] args){
@@ -26,11 +36,15 @@ class Driver {
         // Parse input arguments
         int boardSize = Integer.parseInt(args[0]);
         int maxTimePerMove = MAX_TIME_PER_MOVE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 5){
+            threads = Integer.parseInt(args[5]);
+        }
 
         // Create new board and players
         GameBoard gameBoard = new GameBoard(boardSize);
-        BlackPlayer blackPlayer = new BlackPlayer(args[2], boardSize, maxTimePerMove);
-        WhitePlayer whitePlayer = new WhitePlayer(args[4], boardSize, maxTimePerMove);
+        BlackPlayer blackPlayer = new BlackPlayer(args[2], boardSize, maxTimePerMove, threads);
+        WhitePlayer whitePlayer = new WhitePlayer(args[4], boardSize, maxTimePerMove, threads);
 
         if (args[1].equals("-c")){
             blackComputer = true;
@@ -40,7 +54,24 @@ class Driver {
            whiteComputer = true;
         }
 
+        // A computer player thinks on the human's time, against another computer it would only slow both down
+        blackPlayer.ponder = blackComputer && !whiteComputer;
+        whitePlayer.ponder = whiteComputer && !blackComputer;
+
+        String bookFile = System.getProperty("connect6.book");
+        if (bookFile != null){
+            try {
+                OpeningBook book = new OpeningBook(Paths.get(bookFile));
+                blackPlayer.book = book;
+                whitePlayer.book = book;
+            } catch (IOException e) {
+                System.out.println("Playing without an opening book: " + e.getMessage());
+            }
+        }
+
         runGame(gameBoard, blackPlayer, whitePlayer, blackComputer, whiteComputer);
+        blackPlayer.close();
+        whitePlayer.close();
     }
 
     /**
@@ -69,6 +100,8 @@ class Driver {
 
         if (whiteComputer){
             currentMove = whitePlayer.getMove();
+            System.out.println("Searched " + whitePlayer.depthReached + " turns ahead");
+            logSearch(whitePlayer);
         } else {
             currentMove = getHumanMove(whitePlayer.playerName);
         }
@@ -87,6 +120,8 @@ class Driver {
 
         if (blackComputer){
            currentMove = blackPlayer.getMove();
+           System.out.println("Searched " + blackPlayer.depthReached + " turns ahead");
+           logSearch(blackPlayer);
         } else {
             currentMove = getHumanMove(blackPlayer.playerName);
         }
@@ -94,6 +129,18 @@ class Driver {
         return currentMove;
     }
 
+    /**
+     * Output the statistics of the last search of a computer player if search logging is on
+     * @param player The computer player
+     */
+    private static void logSearch(Player player){
+        if(LOG_SEARCH){
+            SearchResult search = player.lastSearch;
+            System.out.println("Search: depth " + search.depth + ", score " + search.score + ", all threads "
+                    + search.nodes + " nodes, main thread " + search.stats);
+        }
+    }
+
     /**
      * Output a message if a player makes an illegal move
      * @param turn Turn of the player who made the illegal move
@@ -140,6 +187,7 @@ class Driver {
         boolean done = false;
         String turn = "W";
         Move currentMove;
+        List<Move> turns = new ArrayList<>();
         gameBoard.printBoard();
         System.out.println("Welcome " + blackPlayer.playerName + "! You are the black player");
         System.out.println("Welcome " + whitePlayer.playerName + "! You are the white player");
@@ -156,6 +204,7 @@ class Driver {
                 illegalMoveWinner(turn);
             } else {
                 gameBoard.update(currentMove, turn);
+                turns.add(currentMove);
                 gameBoard.printBoard();
                 if (gameBoard.isGameOver()) {
                     done = true;
@@ -171,6 +220,23 @@ class Driver {
                 }
             }
         }
+
+        recordGame(new GameRecord(gameBoard.boardSize, turns));
+    }
+
+    /**
+     * Add the game to the game record file if one was given
+     * @param record The legal turns of the game
+     */
+    private static void recordGame(GameRecord record){
+        if (RECORD_FILE != null){
+            Path file = Paths.get(RECORD_FILE);
+            try {
+                record.append(file);
+            } catch (IOException e) {
+                System.out.println("Could not record the game: " + e.getMessage());
+            }
+        }
     }
 }
 
@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Search engine for one game. It owns the transposition table and the search threads and keeps no static state, so
+ * any number of engines can run in the same program. A game can call it from different threads, one search at a time
+ *
+ * Searches are Lazy SMP. Every thread runs its own iterative deepening search on its own copy of the board and they
+ * only share the transposition table, so results found by one thread cut off and order the search of the others.
+ * Half of the helper threads start one turn deeper so the threads spread out over different depths. Close an
+ * engine once its game is over so its threads end
+ */
+class Engine implements AutoCloseable {
+
+    // Part of the time for a move the threat search may use and how many turns of threats it looks at
+    private static final int THREAT_SEARCH_SHARE = 5;
+    private static final int THREAT_SEARCH_TURNS = 5;
+
+    private final int threads;
+    private final TranspositionTable table;
+    private final AtomicBoolean stop = new AtomicBoolean();
+
+    // Number of stopSearch() calls, lets a pondering search that had to wait for the lock see it was stopped
+    private final AtomicInteger stopRequests = new AtomicInteger();
+    private final AlphaBeta[] searchers;
+    private final ExecutorService helpers;
+
+    // Runs the searches started by ponder() so the caller can keep going
+    private final ExecutorService ponderer;
+
+    /**
+     * @param threads Number of threads searching every move, including the calling thread
+     * @param tableSize Number of entries in the shared transposition table
+     */
+    Engine(int threads, int tableSize){
+        this(threads, tableSize, 0);
+    }
+
+    /**
+     * @param threads Number of threads searching every move, including the calling thread
+     * @param tableSize Number of entries in the shared transposition table
+     * @param evaluationCacheSize Number of entries in the leaf evaluation cache shared by the threads, 0 for none
+     */
+    Engine(int threads, int tableSize, int evaluationCacheSize){
+        this.threads = Math.max(1, threads);
+        this.table = new TranspositionTable(tableSize);
+        this.searchers = new AlphaBeta[this.threads];
+
+        EvaluationCache evaluationCache = evaluationCacheSize > 0 ? new EvaluationCache(evaluationCacheSize) : null;
+        for(int i=0; i<this.threads; i++){
+            searchers[i] = new AlphaBeta(table, stop, evaluationCache);
+        }
+
+        // Daemon threads so an unfinished game never keeps the program alive
+        this.helpers = this.threads == 1 ? null : Executors.newFixedThreadPool(this.threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ponderer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-ponder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Search the position on all threads until the time runs out. The move comes from the calling thread, the
+     * helpers only contribute through the transposition table. A threat search runs first and a forced win it
+     * finds is played without the alpha beta search. A search started with ponder() has to be done first
+     * @param gameBoard Board being played
+     * @param turn Name of the players turn. B for black and W for white
+     * @param maxDepth Deepest iteration to run even if there is time left
+     * @param timeLimit Time for the search in milliseconds
+     * @return Best move, score, principal variation, depth and node count of the search
+     */
+    SearchResult search(GameBoard gameBoard, String turn, int maxDepth, long timeLimit){
+        // The clock only starts once the engine is free, the previous search also set stop when it ended
+        synchronized (this){
+            long start = System.nanoTime();
+            stop.set(false);
+            return search(gameBoard, turn, maxDepth, start + timeLimit * 1000000L,
+                    start + timeLimit * 1000000L / THREAT_SEARCH_SHARE);
+        }
+    }
+
+    /**
+     * Start searching a position in the background without a time limit, for example the position after the reply
+     * the opponent is expected to play while they think about it. The search runs until it reaches the depth,
+     * finds a forced win or stopSearch() is called, and it fills the transposition table for the next search
+     * @param gameBoard Board to search, the engine owns it until the search is done
+     * @param turn Name of the players turn. B for black and W for white
+     * @param maxDepth Deepest iteration to run
+     * @param threatTimeLimit Milliseconds the threat search may use, it does not stop with stopSearch()
+     * @return The result of the search once it is done
+     */
+    Future<SearchResult> ponder(GameBoard gameBoard, String turn, int maxDepth, long threatTimeLimit){
+        int stopsBefore = stopRequests.get();
+        return ponderer.submit(() -> {
+            synchronized (this){
+                // A stopSearch() made while this search waited for the lock still stops it
+                stop.set(stopRequests.get() != stopsBefore);
+                return search(gameBoard, turn, maxDepth, Long.MAX_VALUE,
+                        System.nanoTime() + threatTimeLimit * 1000000L);
+            }
+        });
+    }
+
+    /**
+     * Stop a search started with ponder(), its result keeps the last completed iteration
+     */
+    void stopSearch(){
+        stopRequests.incrementAndGet();
+        stop.set(true);
+    }
+
+    /**
+     * Wait for a search started with ponder() to be done
+     * @param pondering The search
+     * @param timeLimit Milliseconds it may still search before it is stopped
+     * @return Its result
+     */
+    SearchResult finishPonder(Future<SearchResult> pondering, long timeLimit){
+        try {
+            try {
+                return pondering.get(timeLimit, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                stopSearch();
+                return pondering.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Stop a search started with ponder() and let the search threads end. The engine can not search after this
+     */
+    @Override
+    public void close(){
+        stopSearch();
+        if(helpers != null){
+            helpers.shutdown();
+        }
+        ponderer.shutdown();
+    }
+
+    /**
+     * Run a search, the caller holds the lock and has set stop for it
+     */
+    private SearchResult search(GameBoard gameBoard, String turn, int maxDepth, long deadline,
+                                long threatDeadline){
+        ThreatSearch threatSearch = new ThreatSearch(gameBoard);
+        int win = threatSearch.findWin(turn, THREAT_SEARCH_TURNS, threatDeadline);
+        if(win != ThreatSearch.NO_WIN){
+            Move move = AlphaBeta.toMove(win, gameBoard.boardSize);
+
+            // Scored like a win the alpha beta search finds after the same number of turns
+            int score = AlphaBeta.WIN_SCORE - (2 * threatSearch.winTurns - 1);
+            return new SearchResult(move, score, Collections.singletonList(move), 2 * threatSearch.winTurns - 1,
+                    threatSearch.nodes, new SearchStats());
+        }
+
+        table.newSearch();
+
+        List<Future<?>> running = new ArrayList<>();
+        for(int i=1; i<threads; i++){
+            AlphaBeta searcher = searchers[i];
+            GameBoard boardCopy = new GameBoard(gameBoard);
+            int firstDepth = 1 + i % 2;
+            running.add(helpers.submit(() ->
+                    searcher.iterativeDeepening(boardCopy, turn, firstDepth, maxDepth, deadline)));
+        }
+
+        int score = searchers[0].iterativeDeepening(gameBoard, turn, 1, maxDepth, deadline);
+
+        // The main thread is done, the helpers can stop as well
+        stop.set(true);
+        for(Future<?> helper: running){
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        long nodes = 0;
+        for(AlphaBeta searcher: searchers){
+            nodes += searcher.stats.nodes;
+        }
+
+        List<Move> principalVariation = new ArrayList<>();
+        for(int pair: searchers[0].principalVariation){
+            principalVariation.add(AlphaBeta.toMove(pair, gameBoard.boardSize));
+        }
+
+        // Copied because the next search, maybe a pondering one started before this result is read, reuses them
+        return new SearchResult(searchers[0].bestMove, score, principalVariation, searchers[0].depthReached, nodes,
+                searchers[0].stats.copy());
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+/**
+ * Fixed size cache of leaf evaluations keyed by the canonical hash of a position, shared by all search threads
+ * without locks. Every slot holds one position and a new one always replaces it, the leaves of the iteration being
+ * searched are the ones the next iteration evaluates again. Probes and hits are counted in SearchStats
+ *
+ * An engine only has one when it is given a size, the evaluation is incremental so a leaf is cheap and the cached
+ * row of the benchmarks is no faster than the search without it
+ */
+class EvaluationCache {
+
+    static final int MISS = Integer.MIN_VALUE;
+
+    // Set in every stored entry so an empty slot never matches
+    private static final long STORED = 1;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    /**
+     * @param size Number of entries, rounded down to a power of two
+     */
+    EvaluationCache(int size){
+        int capacity = Integer.highestOneBit(Math.max(size, 1));
+        this.keys = new long[capacity];
+        this.entries = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Look up the evaluation of a position
+     * @param key Hash of the position
+     * @return The evaluation stored for it or MISS
+     */
+    int probe(long key){
+        int slot = (int) key & mask;
+        long entry = entries[slot];
+
+        // Stored like the entries of TranspositionTable
+        if(entry != 0 && (keys[slot] ^ entry) == key){
+            return (int) (entry >> 32);
+        }
+        return MISS;
+    }
+
+    /**
+     * Store the evaluation of a position, replacing whatever was in its slot
+     * @param key Hash of the position
+     * @param score The evaluation
+     */
+    void store(long key, int score){
+        int slot = (int) key & mask;
+        long entry = ((long) score << 32) | STORED;
+        entries[slot] = entry;
+        keys[slot] = key ^ entry;
+    }
+
+    /**
+     * Remove every entry
+     */
+    void clear(){
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+    }
+}
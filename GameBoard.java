@@ -1,100 +1,217 @@
-import java.util.*;
+import java.util.Random;
 
 class GameBoard {
 
     int boardSize;
-    String[][] board;
-    ArrayList<Coordinates> availableMoves;
+    BitBoard board;
+    PatternEvaluator patterns;
+    CandidateSet availableMoves;
+
+    // Tiles next to each tile, a tile is y * boardSize + x
+    private int[][] neighbours;
+
+    // Zobrist hash of the stones on the board, updated with one xor for every stone played or taken back
+    long hash;
+    private long[][] zobristKeys;
+
+    // Hash of the position turned by each of the 8 symmetries and where each symmetry moves every tile. Kept up to
+    // date like hash so the canonical hash, shared by all symmetric positions, is always 8 reads away
+    private long[] symmetricHashes;
+    int[][] symmetryTiles;
+
+    // Undo history, one entry per stone played with play()
+    private int[] historyX;
+    private int[] historyY;
+    private boolean[] historyWon;
+    private int historySize;
+
+    // Number of sixes of each colour on the board, kept up to date by play() and undo() so checking for a win is O(1)
+    private final int[] sixes = new int[2];
 
     GameBoard(int boardSize){
         this.boardSize = boardSize;
         this.board = initBoard(boardSize);
-        this.availableMoves = new ArrayList<>();
-
-        int x = (boardSize-1)/2;
-        int y = (boardSize-1)/2;
-        ArrayList<Coordinates> neighbors = getNeighborCoordinates(x, y);
-        this.availableMoves.addAll(neighbors);
+        this.patterns = new PatternEvaluator(board);
+        this.availableMoves = new CandidateSet(board, 1);
+        this.neighbours = CandidateSet.neighbourTable(boardSize, 1);
+        initHistory();
+        initHash();
     }
 
-    GameBoard(String[][] board, ArrayList<Coordinates> availableMoves){
-        this.board = board;
-        this.boardSize = board.length;
-        this.availableMoves = availableMoves;
+    /**
+     * Copy a board so another thread can search the same position. The copy starts with an empty undo history
+     * @param gameBoard Board to copy
+     */
+    GameBoard(GameBoard gameBoard){
+        this.boardSize = gameBoard.boardSize;
+        this.board = gameBoard.board.copy();
+        this.patterns = new PatternEvaluator(board);
+        this.availableMoves = new CandidateSet(board, 1);
+        this.neighbours = CandidateSet.neighbourTable(boardSize, 1);
+        initHistory();
+        initHash();
     }
 
     /**
-     * Initialize the 2d array with the center tile set to black
+     * Initialize the bitboard with the center tile set to black
      * @param boardSize Board dimensions
-     * @return 2d array representing the board with center tile set to black
+     * @return Bitboard representing the board with center tile set to black
      */
-    private static String[][] initBoard(int boardSize) {
-        String[][] board = new String[boardSize][boardSize];
-
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                board[i][j] = "E";
-            }
-        }
+    private static BitBoard initBoard(int boardSize) {
+        BitBoard board = new BitBoard(boardSize);
 
         // Place a black stone in the middle of the board
         int center = (boardSize-1)/2;
-        board[center][center] = "B";
+        board.place(center, center, BitBoard.BLACK);
 
         return board;
     }
 
+    private void initHistory(){
+        int tileCount = boardSize * boardSize;
+        historyX = new int[tileCount];
+        historyY = new int[tileCount];
+        historyWon = new boolean[tileCount];
+        historySize = 0;
+
+        // A copied board can already have a six that no stone in its history made
+        for(int colour=BitBoard.BLACK; colour<=BitBoard.WHITE; colour++){
+            sixes[colour] = board.hasSixInARow(colour) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Create a random key for every tile and colour. The keys only depend on the board size so the same position
+     * always has the same hash, even on a different GameBoard
+     */
+    private void initHash(){
+        Random random = new Random(boardSize);
+        zobristKeys = new long[2][boardSize * boardSize];
+
+        for(int colour=0; colour<2; colour++){
+            for(int i=0; i<boardSize * boardSize; i++){
+                zobristKeys[colour][i] = random.nextLong();
+            }
+        }
+
+        symmetryTiles = Symmetry.table(boardSize);
+        symmetricHashes = new long[Symmetry.COUNT];
+        for(int y=0; y<boardSize; y++){
+            for(int x=0; x<boardSize; x++){
+                for(int colour=0; colour<2; colour++){
+                    if(board.hasStone(x, y, colour)){
+                        updateHashes(colour, y * boardSize + x);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add or remove a stone from the hashes
+     * @param colour BLACK or WHITE
+     * @param tile Tile of the stone
+     */
+    private void updateHashes(int colour, int tile){
+        long[] keys = zobristKeys[colour];
+        for(int symmetry=0; symmetry<Symmetry.COUNT; symmetry++){
+            symmetricHashes[symmetry] ^= keys[symmetryTiles[symmetry][tile]];
+        }
+        hash = symmetricHashes[Symmetry.IDENTITY];
+    }
+
+    /**
+     * Hash the position would have after a symmetry
+     * @param symmetry One of the Symmetry.COUNT symmetries
+     * @return Zobrist hash of the transformed position
+     */
+    long hashUnder(int symmetry){
+        return symmetricHashes[symmetry];
+    }
+
+    /**
+     * The symmetry that turns the position into the one with the smallest hash, all symmetric positions turn into
+     * the same one
+     * @return One of the Symmetry.COUNT symmetries
+     */
+    int canonicalSymmetry(){
+        int best = Symmetry.IDENTITY;
+        long bestHash = hash;
+
+        for(int symmetry=1; symmetry<Symmetry.COUNT; symmetry++){
+            long symmetricHash = symmetricHashes[symmetry];
+            if(Long.compareUnsigned(symmetricHash, bestHash) < 0){
+                best = symmetry;
+                bestHash = symmetricHash;
+            }
+        }
+        return best;
+    }
+
     /**
      * Update the board with the move chosen by the player
      * @param currentMove Board dimensions
      * @param turn Name of the player's turn. B for black and W for white
      */
     public void update(Move currentMove, String turn){
+        play(Coordinates.toArrayX(currentMove.x1), Coordinates.toArrayY(currentMove.y1, boardSize), turn);
+        play(Coordinates.toArrayX(currentMove.x2), Coordinates.toArrayY(currentMove.y2, boardSize), turn);
+    }
 
-        currentMove = Coordinates.toArrayCoordinates(currentMove, boardSize);
-
-        if(turn.equals("B")){
-            board[currentMove.y1][currentMove.x1] = "B";
-            board[currentMove.y2][currentMove.x2] = "B";
-        } else {
-            board[currentMove.y1][currentMove.x1] = "W";
-            board[currentMove.y2][currentMove.x2] = "W";
-        }
-
-        availableMoves = updateAvailableMoves(currentMove.x1, currentMove.y1);
-        availableMoves = updateAvailableMoves(currentMove.x2, currentMove.y2);
+    /**
+     * Place a single stone in place, see play(x, y, turn)
+     * @param tile The tile, y * boardSize + x
+     * @param turn Name of the player's turn. B for black and W for white
+     */
+    void play(int tile, String turn){
+        play(tile % boardSize, tile / boardSize, turn);
     }
 
     /**
-     * Update the move available to a player
+     * Place a single stone in place and update the moves available to a player. Every call can be reverted
+     * with undo() so the search can walk the tree on one board
      * @param x The x coordinate
      * @param y The y coordinate
-     * @return List of the moves available for player
+     * @param turn Name of the player's turn. B for black and W for white
      */
-    ArrayList<Coordinates> updateAvailableMoves(int x, int y){
-
-        // Make a copy to avoid concurrency issues
-        ArrayList<Coordinates> moves = new ArrayList<>(availableMoves);
-
-        // The move made is no longer available
-        for(Coordinates coordinates: moves){
-            if(coordinates.equalTo(x, y)){
-                moves.remove(coordinates);
-                break;
-            }
+    void play(int x, int y, String turn){
+        int colour = BitBoard.colour(turn);
+        board.place(x, y, colour);
+        patterns.update(x, y);
+        updateHashes(colour, y * boardSize + x);
+
+        // The move made is no longer available and its empty neighbours now are
+        availableMoves.stonePlaced(y * boardSize + x);
+
+        // Only a line through the new stone can have become six
+        boolean won = board.makesSix(x, y, colour);
+        if(won){
+            sixes[colour]++;
         }
 
-        // The newly available moves are the empty neighboring tiles of the stone placed. Also don't
-        // add duplicates
-        ArrayList<Coordinates> neighbors = getNeighborCoordinates(x, y);
+        historyX[historySize] = x;
+        historyY[historySize] = y;
+        historyWon[historySize] = won;
+        historySize++;
+    }
 
-        for(Coordinates neighbor: neighbors){
-            if(board[neighbor.y][neighbor.x].equals("E") && Coordinates.getIndex(availableMoves, neighbor) == -1){
-                moves.add(neighbor);
-            }
+    /**
+     * Take back the last stone placed with play() and restore the available moves
+     */
+    void undo(){
+        historySize--;
+
+        int x = historyX[historySize];
+        int y = historyY[historySize];
+        int colour = board.hasStone(x, y, BitBoard.BLACK) ? BitBoard.BLACK : BitBoard.WHITE;
+        if(historyWon[historySize]){
+            sixes[colour]--;
         }
 
-        return moves;
+        updateHashes(colour, y * boardSize + x);
+        board.remove(x, y);
+        patterns.update(x, y);
+        availableMoves.stoneRemoved(y * boardSize + x);
     }
 
     /**
@@ -103,31 +220,42 @@ class GameBoard {
      * @return true if the move is illegal and false if its legal
      */
     public boolean isIllegalMove(Move currentMove){
-        String [][] boardCopy = copyBoard(board);
-        Move move = Coordinates.toArrayCoordinates(currentMove, boardSize);
+        int x1 = Coordinates.toArrayX(currentMove.x1);
+        int y1 = Coordinates.toArrayY(currentMove.y1, boardSize);
 
-        // Have to play the first move on a copy of the board to check if the second move is legal
-        if(isIllegalMove(board, move.x1, move.y1)){
+        // Have to play the first move on the board to check if the second move is legal, then take it back
+        if(isIllegalMove(x1, y1)){
             return true;
         } else{
-            boardCopy[move.y1][move.x1] = "B";
-            return isIllegalMove(boardCopy, move.x2, move.y2);
+            board.place(x1, y1, BitBoard.BLACK);
+            boolean illegal = isIllegalMove(Coordinates.toArrayX(currentMove.x2),
+                    Coordinates.toArrayY(currentMove.y2, boardSize));
+            board.remove(x1, y1);
+            return illegal;
         }
 
     }
 
+    /**
+     * Check if a stone can be placed on the tile
+     * @param tile The tile, y * boardSize + x
+     * @return true if the move is illegal and false if its legal
+     */
+    boolean isIllegalMove(int tile){
+        return isIllegalMove(tile % boardSize, tile / boardSize);
+    }
+
     /**
      * Check if the user selected move is allowed
-     * @param board Board dimensions
      * @param x The x coordinate
      * @param y The y coordinate
      * @return true if the move is illegal and false if its legal
      */
-    private boolean isIllegalMove(String [][] board, int x, int y){
+    boolean isIllegalMove(int x, int y){
         // Have to check if its in bounds before trying to access any values
         if(inBounds(x, y)){
-            boolean isEmpty = board[y][x].equals("E");
-            boolean isAdjacent = adjacentToTile(board, x, y);
+            boolean isEmpty = board.isEmpty(x, y);
+            boolean isAdjacent = adjacentToTile(x, y);
             return !(isEmpty && isAdjacent);
         }
 
@@ -139,11 +267,9 @@ class GameBoard {
         return (x > -1 && x < boardSize && y > -1 && y < boardSize);
     }
 
-    private boolean adjacentToTile(String [][] board, int x, int y){
-        ArrayList<Coordinates> neighbors = getNeighborCoordinates(x, y);
-
-        for(Coordinates neighbor: neighbors){
-            if(!board[neighbor.y][neighbor.x].equals("E")){
+    private boolean adjacentToTile(int x, int y){
+        for(int neighbour: neighbours[y * boardSize + x]){
+            if(!board.isEmpty(neighbour % boardSize, neighbour / boardSize)){
                 return true;
             }
         }
@@ -151,25 +277,19 @@ class GameBoard {
     }
 
     public boolean isGameOver(){
-        if(boardIsFull()){
-            return true;
-        }
-
-        boolean whiteWins = EvaluateBoard.maxInARow(board, "W") == 6;
-        boolean blackWins = EvaluateBoard.maxInARow(board, "B") == 6;
+        return sixes[BitBoard.BLACK] + sixes[BitBoard.WHITE] > 0 || boardIsFull();
+    }
 
-        return (blackWins || whiteWins);
+    /**
+     * @param colour BLACK or WHITE
+     * @return true if the colour has six in a row
+     */
+    boolean hasSix(int colour){
+        return sixes[colour] > 0;
     }
 
     boolean boardIsFull(){
-        for(int i=0; i<this.boardSize; i++){
-            for(int j=0; j<this.boardSize; j++){
-                if(this.board[i][j].equals("E")){
-                    return false;
-                }
-            }
-        }
-        return true;
+        return board.isFull();
     }
 
     public void printBoard(){
@@ -183,7 +303,7 @@ class GameBoard {
 
             // Create a string with the values of one row
             for(int j=0; j < boardSize; j++) {
-                boardRow.append(this.board[i][j]).append("  ");
+                boardRow.append(this.board.getTile(j, i)).append("  ");
             }
 
             System.out.format(rowFormat, Integer.toString(rowNumber), boardRow.toString());
@@ -204,50 +324,6 @@ class GameBoard {
         }
         System.out.println();
     }
-
-    private ArrayList<Coordinates> getNeighborCoordinates(int x, int y){
-
-        ArrayList<Coordinates> neighborCoordinates = new ArrayList<>();
-        int[][] neighbors = new int[][]{{x-1, y-1}, {x, y-1}, {x+1, y-1}, {x-1, y}, {x+1, y}, {x-1, y+1},
-                {x, y+1}, {x+1, y+1}};
-
-        for(int[] neighbor: neighbors){
-            int xCoord = neighbor[0];
-            int yCoord = neighbor[1];
-
-            if(inBounds(xCoord, yCoord)){
-                neighborCoordinates.add(new Coordinates(xCoord, yCoord));
-            }
-        }
-
-        return neighborCoordinates;
-    }
-
-    static String[][] copyBoard(String[][] board){
-        String[][] copy = new String[board.length][board.length];
-
-        for(int i=0; i<board.length; i++){
-            System.arraycopy(board[i], 0, copy[i], 0, board.length);
-        }
-
-        return copy;
-
-    }
-    /**
-     * Reverse a 2d array. Used to check for a diagonal win instead of having two separate diagonal checks
-     * @param board The 2d board to flip
-     * @return The reversed/flipped board
-     */
-    static String[][] getBoardReversed(String[][] board){
-        String [][] reversedBoard = new String[board.length][board.length];
-
-        for(int i=0; i<board.length; i++){
-            String[] row = board[i];
-            Collections.reverse(Arrays.asList(row));
-            reversedBoard[i] = row;
-        }
-        return reversedBoard;
-    }
 }
 
 class Coordinates {
@@ -260,35 +336,6 @@ class Coordinates {
         this.y = y;
     }
 
-    /**
-     * Search a list of coordinates
-     * @param coordinatesList The list of the coordinates to search through
-     * @param coordinate The coordinate to search for
-     * @return The index of the found coordinates. -1 if it does not exist
-     */
-    public static int getIndex(ArrayList<Coordinates> coordinatesList, Coordinates coordinate){
-
-        ListIterator<Coordinates> iterator = coordinatesList.listIterator();
-
-        while(iterator.hasNext()){
-            if(iterator.next().equalTo(coordinate.x, coordinate.y)){
-                return iterator.nextIndex();
-            }
-        }
-
-        return -1;
-    }
-
-    /**
-     * Check if the points are equal
-     * @param x The x coordinate
-     * @param y The y coordinate
-     * @return True if the coordinates are equal and false otherwise
-     */
-    public boolean equalTo(int x, int y){
-        return (this.x == x && this.y == y);
-    }
-
     /**
      * Game play coordinates starts with the bottom left corner as (1. 1) convert to 2d array indices
      * @param move Move to convert from the display coordinates to the array indices
@@ -296,19 +343,25 @@ class Coordinates {
      * @return The move represented as standard array indices
      */
     static Move toArrayCoordinates(Move move, int boardSize){
-        Coordinates firstCoordinates = toArrayCoordinates(new Coordinates(move.x1, move.y1), boardSize);
-        Coordinates secondCoordinates = toArrayCoordinates(new Coordinates(move.x2, move.y2), boardSize);
-        return new Move(firstCoordinates.x, firstCoordinates.y, secondCoordinates.x, secondCoordinates.y);
+        return new Move(toArrayX(move.x1), toArrayY(move.y1, boardSize),
+                toArrayX(move.x2), toArrayY(move.y2, boardSize));
     }
 
     /**
-     * Game play coordinates starts with the bottom left corner as (1. 1) convert to 2d array indices
-     * @param coordinates Coordinates to convert from the display coordinates to the array indices
+     * @param x Display x coordinate
+     * @return The column index
+     */
+    static int toArrayX(int x){
+        return x - 1;
+    }
+
+    /**
+     * @param y Display y coordinate
      * @param boardSize Size of the board
-     * @return The move represented as standard array indices
+     * @return The row index
      */
-    private static Coordinates toArrayCoordinates(Coordinates coordinates, int boardSize){
-        return new Coordinates(coordinates.x -1, Math.abs(coordinates.y-boardSize));
+    static int toArrayY(int y, int boardSize){
+        return Math.abs(y - boardSize);
     }
 
     /**
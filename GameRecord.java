@@ -0,0 +1,104 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One game as a single line of text: the board size followed by the four display coordinates of every turn, white
+ * playing the first turn after the black stone in the middle, for example "13 7 8 8 8 6 6 5 5". It is the same
+ * move list the analysis server takes. Lines that are empty or start with # are not games
+ */
+class GameRecord {
+
+    final int boardSize;
+
+    // Turns in display coordinates, in the order they were played
+    final List<Move> turns;
+
+    GameRecord(int boardSize, List<Move> turns){
+        this.boardSize = boardSize;
+        this.turns = Collections.unmodifiableList(new ArrayList<>(turns));
+    }
+
+    /**
+     * Read a game from its line
+     * @param line The line
+     * @return The game
+     * @throws IllegalArgumentException If the line is not a game or its board size is not between 1 and
+     * TranspositionTable.MAX_BOARD_SIZE
+     */
+    static GameRecord parse(String line){
+        String[] words = line.trim().split("\\s+");
+        if(words.length % 4 != 1){
+            throw new IllegalArgumentException("Expected a board size and four coordinates per turn: " + line);
+        }
+
+        try {
+            int boardSize = Integer.parseInt(words[0]);
+            if(boardSize < 1 || boardSize > TranspositionTable.MAX_BOARD_SIZE){
+                throw new IllegalArgumentException("Board size " + boardSize + " is not between 1 and "
+                        + TranspositionTable.MAX_BOARD_SIZE + ": " + line);
+            }
+            List<Move> turns = new ArrayList<>(words.length / 4);
+            for(int i=1; i<words.length; i += 4){
+                turns.add(new Move(Integer.parseInt(words[i]), Integer.parseInt(words[i + 1]),
+                        Integer.parseInt(words[i + 2]), Integer.parseInt(words[i + 3])));
+            }
+            return new GameRecord(boardSize, turns);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a game: " + line, e);
+        }
+    }
+
+    /**
+     * @param line A line of a game record file
+     * @return true if the line is empty or a comment
+     */
+    static boolean isComment(String line){
+        String trimmed = line.trim();
+        return trimmed.isEmpty() || trimmed.startsWith("#");
+    }
+
+    /**
+     * Name of the player to play a turn
+     * @param turn Number of turns played before it
+     * @return B for black and W for white
+     */
+    static String turnName(int turn){
+        return turn % 2 == 0 ? "W" : "B";
+    }
+
+    /**
+     * Add the game to the end of a file, creating it if needed. Safe to call from several threads writing the same
+     * file
+     * @param file The file
+     * @throws IOException If the file can not be written
+     */
+    void append(Path file) throws IOException {
+        synchronized (GameRecord.class){
+            try(BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)){
+                writer.write(toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return The line of the game
+     */
+    @Override
+    public String toString(){
+        StringBuilder line = new StringBuilder().append(boardSize);
+        for(Move move: turns){
+            line.append(' ').append(move.x1).append(' ').append(move.y1)
+                    .append(' ').append(move.x2).append(' ').append(move.y2);
+        }
+        return line.toString();
+    }
+}
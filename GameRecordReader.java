@@ -0,0 +1,180 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Streams game records from a file, one game per line, without holding more than one game in memory
+
+Replaying goes through every position of every game on one board per board size: the turns of a game are played
+and then taken back, so a file of millions of games never builds more than a few boards. Games with an illegal
+turn or a line that is not a game, including one with a board size the engine does not support, are skipped and
+counted with their line number printed to stderr
+
+Input arguments
+1. Game record file
+2. (optional) "positions" to print every position as a game record line, for example to feed AnalysisServer or
+   to build a training set, otherwise only the counts are printed
+
+Example  "java GameRecordReader games.txt positions > positions.txt"
+*/
+
+
+class GameRecordReader implements Closeable {
+
+    /**
+     * Receives the positions of a replay
+     */
+    interface PositionVisitor {
+        /**
+         * Called before every turn of a game and once after its last turn. The board is only valid during the call
+         * and has to be left as it was
+         * @param record The game
+         * @param turn Number of turns of the game played on the board, the player to move is turnName(turn)
+         * @param gameBoard Board with the position
+         */
+        void visit(GameRecord record, int turn, GameBoard gameBoard);
+    }
+
+    private final BufferedReader reader;
+    private final Map<Integer, GameBoard> boards = new HashMap<>();
+    private long lineNumber;
+    private long skipped;
+
+    GameRecordReader(BufferedReader reader){
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next game
+     * @return The game or null at the end of the file
+     * @throws IOException If reading fails
+     */
+    GameRecord next() throws IOException {
+        String line;
+        while((line = reader.readLine()) != null){
+            lineNumber++;
+            if(GameRecord.isComment(line)){
+                continue;
+            }
+            try {
+                return GameRecord.parse(line);
+            } catch (IllegalArgumentException e) {
+                skip(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replay every remaining game of the file
+     * @param visitor Receives every position
+     * @return Number of games replayed
+     * @throws IOException If reading fails
+     */
+    long replay(PositionVisitor visitor) throws IOException {
+        long games = 0;
+        GameRecord record;
+
+        while((record = next()) != null){
+            if(replay(record, visitor)){
+                games++;
+            } else {
+                skip("Illegal turn in " + record);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Replay one game on the board kept for its size and take its turns back again
+     * @return false if the game has an illegal turn, its positions before that turn were still visited
+     */
+    private boolean replay(GameRecord record, PositionVisitor visitor){
+        GameBoard gameBoard = boards.computeIfAbsent(record.boardSize, GameBoard::new);
+
+        int stones = 0;
+        boolean legal = true;
+        for(int turn=0; turn<record.turns.size() && legal; turn++){
+            visitor.visit(record, turn, gameBoard);
+
+            Move move = record.turns.get(turn);
+            legal = !gameBoard.isGameOver() && !gameBoard.isIllegalMove(move);
+            if(legal){
+                gameBoard.update(move, GameRecord.turnName(turn));
+                stones += 2;
+            }
+        }
+        if(legal){
+            visitor.visit(record, record.turns.size(), gameBoard);
+        }
+
+        for(int i=0; i<stones; i++){
+            gameBoard.undo();
+        }
+        return legal;
+    }
+
+    /**
+     * Count a line that was not replayed and say why
+     * @param reason What is wrong with the line
+     */
+    private void skip(String reason){
+        skipped++;
+        System.err.println("Skipped line " + lineNumber() + ": " + reason);
+    }
+
+    /**
+     * @return Lines read so far
+     */
+    long lineNumber(){
+        return lineNumber;
+    }
+
+    /**
+     * @return Lines that are not a game plus games with an illegal turn, read so far
+     */
+    long skipped(){
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean printPositions = args.length > 1 && args[1].equals("positions");
+        PrintWriter out = new PrintWriter(System.out);
+        long[] counts = new long[3];
+        final int positions = 0;
+        final int blackWins = 1;
+        final int whiteWins = 2;
+
+        long start = System.nanoTime();
+        long games;
+        try(GameRecordReader records = new GameRecordReader(Files.newBufferedReader(Paths.get(args[0]),
+                StandardCharsets.UTF_8))){
+            games = records.replay((record, turn, gameBoard) -> {
+                counts[positions]++;
+                if(printPositions){
+                    out.println(new GameRecord(record.boardSize, record.turns.subList(0, turn)));
+                }
+                if(turn == record.turns.size() && gameBoard.isGameOver() && !gameBoard.boardIsFull()){
+                    counts[GameRecord.turnName(turn).equals("W") ? blackWins : whiteWins]++;
+                }
+            });
+            out.flush();
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d games, %d positions, %d skipped, black won %d, white won %d, %.0f games/s%n",
+                    games, counts[positions], records.skipped(), counts[blackWins], counts[whiteWins],
+                    games / Math.max(seconds, 1e-9));
+        }
+    }
+}
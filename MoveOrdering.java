@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * Orders the pairs of a node so the ones most likely to cause a cutoff are searched first: the pair starting with
+ * the move from the transposition table, then pairs that block or complete a threat, then the killer pairs that
+ * caused a cutoff at the same depth and finally the rest by the history heuristic. One instance per search thread
+ */
+class MoveOrdering {
+
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int THREAT_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 26;
+
+    // History is halved once a tile gets past this so it never outweighs a killer
+    private static final int MAX_HISTORY = KILLER_SCORE / 4;
+
+    // Two killer pairs for every depth, the most recent first
+    private int[][] killers = new int[0][2];
+
+    // How often a stone on each tile was part of a cutoff, weighted by depth, indexed by [colour][tile]
+    private int[][] history = new int[2][0];
+
+    // Score << 32 | pair of every pair being sorted
+    private long[] sortKeys = new long[0];
+
+    /**
+     * Make sure the tables fit the search and age the history of the last search
+     * @param maxDepth Depth the search will go to
+     * @param boardSize Size of the board
+     */
+    void newSearch(int maxDepth, int boardSize){
+        if(killers.length < maxDepth){
+            killers = new int[maxDepth][2];
+            for(int[] depthKillers: killers){
+                Arrays.fill(depthKillers, -1);
+            }
+        }
+
+        int tileCount = boardSize * boardSize;
+        if(history[0].length != tileCount){
+            history = new int[2][tileCount];
+        } else {
+            for(int[] colourHistory: history){
+                for(int i=0; i<tileCount; i++){
+                    colourHistory[i] /= 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort the pairs of a node, best first
+     * @param pairs Pairs packed as first tile << 16 | second tile
+     * @param pairCount Number of pairs
+     * @param depth Depth of the node
+     * @param colour Colour of the player to move
+     * @param hashMove First stone of the best pair from the transposition table or TranspositionTable.NO_MOVE
+     * @param threatTiles Tiles that block or complete a threat
+     */
+    void order(int[] pairs, int pairCount, int depth, int colour, int hashMove, boolean[] threatTiles){
+        if(sortKeys.length < pairCount){
+            sortKeys = new long[pairs.length];
+        }
+
+        int[] colourHistory = history[colour];
+        for(int i=0; i<pairCount; i++){
+            int pair = pairs[i];
+            int first = pair >>> 16;
+            int second = pair & 0xFFFF;
+            int score = 0;
+
+            if(first == hashMove){
+                score += HASH_MOVE_SCORE;
+            }
+            if(samePair(pair, killers[depth][0]) || samePair(pair, killers[depth][1])){
+                score += KILLER_SCORE;
+            }
+            if(threatTiles[first] || (second != AlphaBeta.NO_TILE && threatTiles[second])){
+                score += THREAT_SCORE;
+            }
+
+            score += colourHistory[first];
+            if(second != AlphaBeta.NO_TILE){
+                score += colourHistory[second];
+            }
+
+            // Negated so an ascending sort puts the best pair first
+            sortKeys[i] = ((long) -score << 32) | pair;
+        }
+
+        Arrays.sort(sortKeys, 0, pairCount);
+        for(int i=0; i<pairCount; i++){
+            pairs[i] = (int) sortKeys[i];
+        }
+    }
+
+    /**
+     * Remember a pair that caused a cutoff
+     * @param pair The pair
+     * @param depth Depth of the node
+     * @param colour Colour of the player who played it
+     * @param remainingDepth Depth searched below the node, deeper cutoffs count for more
+     */
+    void cutoff(int pair, int depth, int colour, int remainingDepth){
+        if(!samePair(pair, killers[depth][0])){
+            killers[depth][1] = killers[depth][0];
+            killers[depth][0] = pair;
+        }
+
+        int bonus = remainingDepth * remainingDepth;
+        addHistory(colour, pair >>> 16, bonus);
+        if((pair & 0xFFFF) != AlphaBeta.NO_TILE){
+            addHistory(colour, pair & 0xFFFF, bonus);
+        }
+    }
+
+    private void addHistory(int colour, int tile, int bonus){
+        history[colour][tile] += bonus;
+
+        if(history[colour][tile] > MAX_HISTORY){
+            for(int[] colourHistory: history){
+                for(int i=0; i<colourHistory.length; i++){
+                    colourHistory[i] /= 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pairs are the same no matter which of the two stones is played first
+     */
+    private static boolean samePair(int pair, int other){
+        if(other == -1){
+            return false;
+        }
+        return pair == other || pair == ((other << 16) | (other >>> 16));
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Book of moves for the opening, read from a file mapped into memory so a book of any size opens instantly and
+ * lookups only touch the pages they need. Positions are stored once for all 8 symmetries: the key is the hash of
+ * the position turned by its canonical symmetry and the move is stored turned the same way
+ *
+ * File format, big endian
+ * header: magic (int), version (int), board size (int), number of entries (int)
+ * entries sorted by key as unsigned longs: key (long), move packed as first tile << 16 | second tile (int)
+ */
+class OpeningBook {
+
+    static final int NO_MOVE = -1;
+
+    private static final int MAGIC = 0x43364F42;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = 12;
+
+    final int boardSize;
+    private final int entryCount;
+    private final MappedByteBuffer entries;
+
+    /**
+     * Open a book written by write()
+     * @param file The book file
+     * @throws IOException If the file can't be read or is not a book
+     */
+    OpeningBook(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(channel.size() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+                throw new IOException(file + " is not an opening book");
+            }
+            this.boardSize = buffer.getInt(8);
+            this.entryCount = buffer.getInt(12);
+            if(channel.size() != HEADER_BYTES + (long) entryCount * ENTRY_BYTES){
+                throw new IOException(file + " is truncated");
+            }
+            this.entries = buffer;
+        }
+    }
+
+    /**
+     * Find the book move for a position
+     * @param gameBoard Board being played
+     * @return The move packed as first tile << 16 | second tile in the board's own orientation or NO_MOVE
+     */
+    int lookup(GameBoard gameBoard){
+        if(gameBoard.boardSize != boardSize){
+            return NO_MOVE;
+        }
+
+        int symmetry = gameBoard.canonicalSymmetry();
+        long key = gameBoard.hashUnder(symmetry);
+
+        // Binary search over the sorted keys, straight on the mapped file
+        int low = 0;
+        int high = entryCount - 1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            int offset = HEADER_BYTES + middle * ENTRY_BYTES;
+            int comparison = Long.compareUnsigned(entries.getLong(offset), key);
+
+            if(comparison < 0){
+                low = middle + 1;
+            } else if(comparison > 0){
+                high = middle - 1;
+            } else {
+                return Symmetry.transformPair(entries.getInt(offset + 8), Symmetry.inverse(symmetry), boardSize);
+            }
+        }
+        return NO_MOVE;
+    }
+
+    /**
+     * Number of positions in the book
+     */
+    int size(){
+        return entryCount;
+    }
+
+    /**
+     * Add a position and its move to the entries of a book being built, a position already in it keeps its move
+     * @param bookEntries Canonical keys and moves collected so far
+     * @param gameBoard Board with the position
+     * @param pair The move packed as first tile << 16 | second tile
+     * @return true if the position was new
+     */
+    static boolean add(Map<Long, Integer> bookEntries, GameBoard gameBoard, int pair){
+        int symmetry = gameBoard.canonicalSymmetry();
+        long key = gameBoard.hashUnder(symmetry);
+        return bookEntries.putIfAbsent(key, Symmetry.transformPair(pair, symmetry, gameBoard.boardSize)) == null;
+    }
+
+    /**
+     * Write a book file
+     * @param file File to create or replace
+     * @param boardSize Size of the board the book is for
+     * @param bookEntries Canonical keys and moves from add()
+     * @throws IOException If the file can't be written
+     */
+    static void write(Path file, int boardSize, Map<Long, Integer> bookEntries) throws IOException {
+        Map<Long, Integer> sorted = new TreeMap<>(Long::compareUnsigned);
+        sorted.putAll(bookEntries);
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(boardSize);
+            out.writeInt(sorted.size());
+
+            for(Map.Entry<Long, Integer> entry: sorted.entrySet()){
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+import java.util.Arrays;
+
+/**
+ * Pattern evaluation of every window of six tiles on the board. Each window is encoded as a base 3 number, one digit
+ * per tile (0 empty, 1 black, 2 white), and scored with a table built once for all 729 patterns. Placing or removing
+ * a stone only changes one digit of the windows through that tile, so the total score of both colours and their
+ * number of threats are kept up to date in constant time
+ */
+class PatternEvaluator {
+
+    static final int WINDOW = 6;
+    static final int PATTERN_COUNT = 729;
+
+    private static final int[] POWERS_OF_THREE = {1, 3, 9, 27, 81, 243};
+
+    // Score of a window by the number of the colour's stones in it when the opponent has none. Four and five are
+    // threats the opponent has to block, a live four shows up in more windows than a dead one so it scores higher
+    private static final int[] STONE_SCORES = {0, 1, 4, 12, 40, 60};
+
+    // Extra score for every two of the colour's stones next to each other in a window, connected shapes are harder
+    // to block than split ones with the same number of stones
+    private static final int CONNECTED_SCORE = 1;
+
+    // Score of every pattern for each colour, indexed by [colour][pattern]
+    static final int[][] PATTERN_SCORES = buildPatternScores();
+
+    // 1 if the pattern has four or more of the colour's stones and none of the opponent's, indexed by [colour][pattern]
+    private static final int[][] PATTERN_THREATS = buildPatternThreats();
+
+    private final BitBoard board;
+    private final int boardSize;
+
+    // Pattern of the window starting at a tile, indexed by [direction][tile]. -1 if the window runs off the board
+    private final int[][] windowPatterns;
+
+    private final int[] scores;
+    private final int[] threats;
+
+    PatternEvaluator(BitBoard board){
+        this.board = board;
+        this.boardSize = board.boardSize;
+        this.windowPatterns = new int[4][boardSize * boardSize];
+        this.scores = new int[2];
+        this.threats = new int[2];
+
+        for(int direction=0; direction<4; direction++){
+            for(int y=0; y<boardSize; y++){
+                for(int x=0; x<boardSize; x++){
+                    windowPatterns[direction][y * boardSize + x] = initialPattern(direction, x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the windows through a tile after a stone was placed on or removed from it
+     * @param x The x coordinate
+     * @param y The y coordinate
+     */
+    void update(int x, int y){
+        int digit = digit(x, y);
+
+        for(int direction=0; direction<4; direction++){
+            int[] patterns = windowPatterns[direction];
+
+            // The tile is the offset-th tile of the window starting offset steps back
+            for(int offset=0; offset<WINDOW; offset++){
+                int startX = x - offset * BitBoard.DX[direction];
+                int startY = y - offset * BitBoard.DY[direction];
+                if(!inBounds(startX, startY)){
+                    break;
+                }
+
+                int start = startY * boardSize + startX;
+                int pattern = patterns[start];
+                if(pattern == -1){
+                    continue;
+                }
+
+                int power = POWERS_OF_THREE[offset];
+                int oldDigit = (pattern / power) % 3;
+                if(oldDigit == digit){
+                    continue;
+                }
+
+                int newPattern = pattern + (digit - oldDigit) * power;
+                for(int colour=0; colour<2; colour++){
+                    scores[colour] += PATTERN_SCORES[colour][newPattern] - PATTERN_SCORES[colour][pattern];
+                    threats[colour] += PATTERN_THREATS[colour][newPattern] - PATTERN_THREATS[colour][pattern];
+                }
+                patterns[start] = newPattern;
+            }
+        }
+    }
+
+    /**
+     * Sum of the pattern scores of every window for a colour
+     * @param colour BLACK or WHITE
+     * @return The colour's score
+     */
+    int score(int colour){
+        return scores[colour];
+    }
+
+    /**
+     * Number of windows of six tiles with at least four of the colour's stones and none of the opponent's
+     * @param colour BLACK or WHITE
+     * @return Number of threats on the board
+     */
+    int threats(int colour){
+        return threats[colour];
+    }
+
+    /**
+     * Check if an empty tile is part of a threat of either colour, so a stone there blocks or completes it
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return true if the tile is in a window of six with four or more stones of one colour and none of the other
+     */
+    boolean isThreatTile(int x, int y){
+        for(int direction=0; direction<4; direction++){
+            int[] patterns = windowPatterns[direction];
+
+            for(int offset=0; offset<WINDOW; offset++){
+                int startX = x - offset * BitBoard.DX[direction];
+                int startY = y - offset * BitBoard.DY[direction];
+                if(!inBounds(startX, startY)){
+                    break;
+                }
+
+                int pattern = patterns[startY * boardSize + startX];
+                if(pattern == -1){
+                    continue;
+                }
+                if(PATTERN_THREATS[BitBoard.BLACK][pattern] + PATTERN_THREATS[BitBoard.WHITE][pattern] > 0){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int initialPattern(int direction, int x, int y){
+        int endX = x + (WINDOW - 1) * BitBoard.DX[direction];
+        int endY = y + (WINDOW - 1) * BitBoard.DY[direction];
+        if(!inBounds(endX, endY)){
+            return -1;
+        }
+
+        int pattern = 0;
+        for(int i=0; i<WINDOW; i++){
+            pattern += digit(x + i * BitBoard.DX[direction], y + i * BitBoard.DY[direction]) * POWERS_OF_THREE[i];
+        }
+
+        for(int colour=0; colour<2; colour++){
+            scores[colour] += PATTERN_SCORES[colour][pattern];
+            threats[colour] += PATTERN_THREATS[colour][pattern];
+        }
+        return pattern;
+    }
+
+    private int digit(int x, int y){
+        if(board.isEmpty(x, y)){
+            return 0;
+        }
+        return board.hasStone(x, y, BitBoard.BLACK) ? 1 : 2;
+    }
+
+    /**
+     * Score every pattern for both colours. Windows with stones of both colours can never become six so score 0
+     * @return Scores indexed by [colour][pattern]
+     */
+    private static int[][] buildPatternScores(){
+        int[][] patternScores = new int[2][PATTERN_COUNT];
+
+        for(int pattern=0; pattern<PATTERN_COUNT; pattern++){
+            for(int colour=0; colour<2; colour++){
+                int own = colour + 1;
+                int stones = 0;
+                int connected = 0;
+                boolean blocked = false;
+
+                int previous = 0;
+                int rest = pattern;
+                for(int i=0; i<WINDOW; i++){
+                    int digit = rest % 3;
+                    rest /= 3;
+
+                    if(digit == own){
+                        stones++;
+                        if(previous == own){
+                            connected++;
+                        }
+                    } else if(digit != 0){
+                        blocked = true;
+                    }
+                    previous = digit;
+                }
+
+                // Six in a row is a win and handled by the search, not the evaluation
+                if(!blocked && stones < WINDOW){
+                    patternScores[colour][pattern] = STONE_SCORES[stones] + CONNECTED_SCORE * connected;
+                }
+            }
+        }
+        return patternScores;
+    }
+
+    /**
+     * Mark the patterns that are a threat of each colour
+     * @return 1 for a threat, indexed by [colour][pattern]
+     */
+    private static int[][] buildPatternThreats(){
+        int[][] patternThreats = new int[2][PATTERN_COUNT];
+
+        for(int pattern=0; pattern<PATTERN_COUNT; pattern++){
+            int[] stones = new int[3];
+            int rest = pattern;
+            for(int i=0; i<WINDOW; i++){
+                stones[rest % 3]++;
+                rest /= 3;
+            }
+            for(int colour=0; colour<2; colour++){
+                int own = stones[colour + 1];
+                int opponent = stones[2 - colour];
+                patternThreats[colour][pattern] = own >= 4 && opponent == 0 ? 1 : 0;
+            }
+        }
+        return patternThreats;
+    }
+
+    /**
+     * Compare the counts with another evaluator of the same board, for checking the incremental updates against
+     * one built from scratch
+     * @param other The other evaluator
+     * @return true if every count is the same
+     */
+    boolean sameState(PatternEvaluator other){
+        return Arrays.deepEquals(windowPatterns, other.windowPatterns)
+                && Arrays.equals(scores, other.scores)
+                && Arrays.equals(threats, other.threats);
+    }
+
+    private boolean inBounds(int x, int y){
+        return (x > -1 && x < boardSize && y > -1 && y < boardSize);
+    }
+}
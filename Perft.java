@@ -0,0 +1,206 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+Checks the move generation, play/undo and the search against simple reference versions
+
+For the start position and a number of random positions it counts every legal way to play the given number of
+turns, stone by stone with the player to move and the stones they have left in the turn, compares the count from
+the start position with the known one and checks the board, candidate order, evaluator and hashes are exactly as
+before after taking them all back. It also walks the search's own pair generation, which has to generate only
+legal pairs, each once and no more than there are legal ways to play, and compares the score of the alpha beta
+search, with the transposition table, move ordering and null windows, with plain negamax over the same pairs. A
+position that fails a check is printed and the program exits with status 1
+
+Input arguments
+1. Size of the board
+2. Number of turns to count and search
+3. (optional) Number of random positions after the start position, defaults to 10
+4. (optional) Random turns played to reach each position, defaults to 3
+5. (optional) Seed for the random turns, defaults to 1
+
+Example  "java Perft 9 2"
+*/
+
+
+class Perft {
+
+    private static final int DEFAULT_POSITIONS = 10;
+    private static final int DEFAULT_RANDOM_TURNS = 3;
+    private static final int DEFAULT_SEED = 1;
+    private static final int TABLE_SIZE = 1 << 20;
+    private static final long UNKNOWN = -1;
+
+    // Stones a player places every turn
+    private static final int STONES_PER_TURN = 2;
+
+    public static void main(String[] args){
+
+        // Parse input arguments
+        int boardSize = Integer.parseInt(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        int positions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_POSITIONS;
+        int randomTurns = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RANDOM_TURNS;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+
+        Random random = new Random(seed);
+        int failures = 0;
+
+        for(int position=0; position<=positions; position++){
+            GameBoard gameBoard = new GameBoard(boardSize);
+
+            // White plays the first turn after the black stone in the middle, the start position has no random turns
+            String turn = "W";
+            for(int i=0; position > 0 && i<randomTurns && !gameBoard.isGameOver(); i++){
+                for(int stone=0; stone<STONES_PER_TURN && !gameBoard.isGameOver(); stone++){
+                    int tile = gameBoard.availableMoves.get(random.nextInt(gameBoard.availableMoves.size()));
+                    gameBoard.play(tile, turn);
+                }
+                turn = BitBoard.opponentTurn(turn);
+            }
+            if(gameBoard.isGameOver()){
+                continue;
+            }
+
+            if(!check(gameBoard, turn, depth, position)){
+                failures++;
+            }
+        }
+
+        if(failures > 0){
+            System.out.println(failures + " positions failed");
+            System.exit(1);
+        }
+        System.out.println("All positions passed");
+    }
+
+    /**
+     * Count, search and compare one position
+     * @return true if every check passed
+     */
+    private static boolean check(GameBoard gameBoard, String turn, int depth, int position){
+        int[] candidates = candidates(gameBoard);
+
+        long start = System.nanoTime();
+        long legal = perft(gameBoard, turn, STONES_PER_TURN, depth);
+        long perftMillis = (System.nanoTime() - start) / 1000000L;
+        String failure = restoreFailure(gameBoard, candidates);
+
+        AlphaBeta reference = new AlphaBeta(new TranspositionTable(1), new AtomicBoolean());
+        long generated = 0;
+        int referenceScore = 0;
+        try {
+            generated = reference.perft(gameBoard, turn, depth);
+            referenceScore = reference.referenceScore(gameBoard, turn, depth);
+        } catch (IllegalStateException e) {
+            failure = e.getMessage();
+        }
+
+        AlphaBeta search = new AlphaBeta(new TranspositionTable(TABLE_SIZE), new AtomicBoolean());
+        int score = search.iterativeDeepening(gameBoard, turn, 1, depth, Long.MAX_VALUE);
+
+        // Every pair is two of the legal ways to play it, or one for a game won by its first stone
+        long known = position == 0 ? knownCount(gameBoard.boardSize, depth) : UNKNOWN;
+        if(failure == null){
+            failure = restoreFailure(gameBoard, candidates);
+        }
+        if(failure == null && known != UNKNOWN && legal != known){
+            failure = "expected " + known + " legal";
+        } else if(failure == null && generated > legal){
+            failure = "more generated than legal";
+        } else if(failure == null && score != referenceScore){
+            failure = "search score differs from the reference";
+        }
+
+        System.out.format("Position %d, %s to move: %d legal (%dms), %d generated, reference score %d, "
+                        + "search score %d in %d nodes%s%n", position, turn, legal, perftMillis, generated,
+                referenceScore, score, search.stats.nodes, failure == null ? "" : " FAILED: " + failure);
+        if(failure != null){
+            gameBoard.printBoard();
+        }
+        return failure == null;
+    }
+
+    /**
+     * Legal counts from the start position that do not depend on the board size, worked out by hand for one turn
+     * @param boardSize Size of the board
+     * @param depth Number of turns
+     * @return The count or UNKNOWN
+     */
+    private static long knownCount(int boardSize, int depth){
+        // White's stones are at most two tiles from the middle and black's at most four, so the edge is not in reach
+        if(depth == 1 && boardSize >= 5){
+            return 88;
+        } else if(depth == 2 && boardSize >= 9){
+            return 19280;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return The candidate tiles of the board in their order
+     */
+    private static int[] candidates(GameBoard gameBoard){
+        int[] tiles = new int[gameBoard.availableMoves.size()];
+        for(int i=0; i<tiles.length; i++){
+            tiles[i] = gameBoard.availableMoves.get(i);
+        }
+        return tiles;
+    }
+
+    /**
+     * Compare the board after taking every stone back with how it was and with a board built from scratch
+     * @param gameBoard The board
+     * @param candidates Candidate tiles before, in their order
+     * @return What was not restored or null
+     */
+    private static String restoreFailure(GameBoard gameBoard, int[] candidates){
+        GameBoard fresh = new GameBoard(gameBoard);
+        if(!Arrays.equals(candidates(gameBoard), candidates)){
+            return "candidates not restored";
+        } else if(!gameBoard.patterns.sameState(fresh.patterns)){
+            return "pattern evaluator not restored";
+        } else if(gameBoard.isGameOver() != fresh.isGameOver()){
+            return "game over not restored";
+        }
+        for(int symmetry=0; symmetry<Symmetry.COUNT; symmetry++){
+            if(gameBoard.hashUnder(symmetry) != fresh.hashUnder(symmetry)){
+                return "hash not restored";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count every legal way to play the turns, a game that ends early counts as one position
+     * @param gameBoard Board to count from, it is left as it was
+     * @param turn Name of the player to move. B for black and W for white
+     * @param stonesLeft Stones the player to move still places this turn
+     * @param turnsLeft Turns still to play, including the one being played
+     * @return Number of positions
+     */
+    static long perft(GameBoard gameBoard, String turn, int stonesLeft, int turnsLeft){
+        if(turnsLeft == 0 || gameBoard.isGameOver()){
+            return 1;
+        }
+
+        // The available moves change while stones are played so the list is copied first
+        int[] tiles = new int[gameBoard.availableMoves.size()];
+        for(int i=0; i<tiles.length; i++){
+            tiles[i] = gameBoard.availableMoves.get(i);
+        }
+
+        long positions = 0;
+        for(int tile: tiles){
+            gameBoard.play(tile, turn);
+            if(stonesLeft > 1){
+                positions += perft(gameBoard, turn, stonesLeft - 1, turnsLeft);
+            } else {
+                positions += perft(gameBoard, BitBoard.opponentTurn(turn), STONES_PER_TURN, turnsLeft - 1);
+            }
+            gameBoard.undo();
+        }
+        return positions;
+    }
+}
@@ -1,37 +1,192 @@
+import java.util.Collections;
+import java.util.concurrent.Future;
+
 public class Player {
 
-    private final int MAX_DEPTH = 3;
+    // Deepest the search goes (in turns of two stones) even if there is time left
+    private static final int MAX_DEPTH = 10;
+
+    // Entries in the transposition table shared by the search threads
+    private final int TABLE_SIZE = 1 << 20;
+
+    // Entries in the leaf evaluation cache, off unless set with -Dconnect6.evaluationCache=<entries>
+    private static final int EVALUATION_CACHE_SIZE = Integer.getInteger("connect6.evaluationCache", 0);
 
     String playerName;
     private int boardSize;
+    private int maxTimePerMove;
+    private int maxDepth;
     GameBoard gameBoard;
+    private Engine engine;
+
+    // Depth in turns reached by the search for the last move and everything else it reported
+    int depthReached;
+    SearchResult lastSearch;
+
+    // Search the position after the reply the opponent is expected to play while they think about their move.
+    // Only worth it when the opponent does not need the processor, like a human
+    boolean ponder;
 
-    Player(String playerName, int boardSize){
+    // Moves played without searching in the positions it knows, null to always search
+    OpeningBook book;
+
+    // Search started after the last move, the reply it expects (array coordinates) and whether the opponent played it
+    private Future<SearchResult> pondering;
+    private Move expectedReply;
+    private boolean ponderHit;
+
+    Player(String playerName, int boardSize, int maxTimePerMove, int threads){
+        this(playerName, boardSize, maxTimePerMove, threads, MAX_DEPTH);
+    }
+
+    /**
+     * @param playerName Name of the player
+     * @param boardSize Size of the board
+     * @param maxTimePerMove Milliseconds the search may use for every move
+     * @param threads Number of threads searching every move
+     * @param maxDepth Deepest the search goes in turns even if there is time left
+     */
+    Player(String playerName, int boardSize, int maxTimePerMove, int threads, int maxDepth){
         this.playerName = playerName;
         this.boardSize = boardSize;
+        this.maxTimePerMove = maxTimePerMove;
+        this.maxDepth = maxDepth;
         this.gameBoard = new GameBoard(boardSize);
+        this.engine = new Engine(threads, TABLE_SIZE, EVALUATION_CACHE_SIZE);
     }
 
     /**
-     * Select two moves with alpha beta pruning + min max
+     * Select two moves with alpha beta pruning + min max, searching deeper until the time for the move runs out.
+     * Both stones are chosen by the same search since every move in the tree is a full turn
      * @param turn Name of the players turn. B for black and W for white
      * @return Move found
      */
     Move getMove(String turn){
-        AlphaBeta.minMax(gameBoard, turn, MAX_DEPTH, 0, -1000, 1000, true, 0);
-        Coordinates firstMove = AlphaBeta.bestMove;
-        gameBoard.availableMoves = gameBoard.updateAvailableMoves(firstMove.x, firstMove.y);
-        gameBoard.board[firstMove.y][firstMove.x] = turn;
+        SearchResult result;
+        Move bookMove = bookMove();
+        if(bookMove != null){
+            stopPondering();
+            result = new SearchResult(bookMove, 0, Collections.singletonList(bookMove), 0, 0, new SearchStats());
+        } else if(pondering != null && ponderHit){
+            // The pondering search is already on this position, give it the time for the move and take its result
+            result = engine.finishPonder(pondering, maxTimePerMove);
+            if(result.bestMove == null){
+                result = engine.search(gameBoard, turn, maxDepth, maxTimePerMove);
+            }
+        } else {
+            stopPondering();
+            result = engine.search(gameBoard, turn, maxDepth, maxTimePerMove);
+        }
+        pondering = null;
+        Move move = result.bestMove;
+        depthReached = result.depth;
+        lastSearch = result;
+
+        gameBoard.play(move.x1, move.y1, turn);
+        gameBoard.play(move.x2, move.y2, turn);
 
-        AlphaBeta.minMax(gameBoard, turn, MAX_DEPTH, 0, -1000, 1000, true, 0);
-        Coordinates secondMove = AlphaBeta.bestMove;
-        gameBoard.availableMoves = gameBoard.updateAvailableMoves(secondMove.x, secondMove.y);
-        gameBoard.board[secondMove.y][secondMove.x] = turn;
+        if(ponder && result.principalVariation.size() > 1 && !gameBoard.isGameOver()){
+            startPondering(result.principalVariation.get(1), turn);
+        }
 
-        firstMove = Coordinates.toDisplayCoordinates(firstMove, boardSize);
-        secondMove = Coordinates.toDisplayCoordinates(secondMove, boardSize);
+        Coordinates firstMove = Coordinates.toDisplayCoordinates(new Coordinates(move.x1, move.y1), boardSize);
+        Coordinates secondMove = Coordinates.toDisplayCoordinates(new Coordinates(move.x2, move.y2), boardSize);
 
         return new Move(firstMove.x, firstMove.y, secondMove.x, secondMove.y);
     }
 
+    /**
+     * The book move for the position on the board if it is legal
+     * @return The move in array coordinates or null
+     */
+    private Move bookMove(){
+        if(book == null){
+            return null;
+        }
+        int pair = book.lookup(gameBoard);
+        if(pair == OpeningBook.NO_MOVE){
+            return null;
+        }
+
+        Move move = AlphaBeta.toMove(pair, boardSize);
+        if(gameBoard.isIllegalMove(move.x1, move.y1)){
+            return null;
+        }
+        gameBoard.board.place(move.x1, move.y1, BitBoard.BLACK);
+        boolean illegal = gameBoard.isIllegalMove(move.x2, move.y2);
+        gameBoard.board.remove(move.x1, move.y1);
+        return illegal ? null : move;
+    }
+
+    /**
+     * Play the opponent's move on the board of the player
+     * @param opponentMove Move in display coordinates
+     * @param opponentTurn Name of the opponent. B for black and W for white
+     */
+    void opponentMoved(Move opponentMove, String opponentTurn){
+        if(pondering != null){
+            Move move = Coordinates.toArrayCoordinates(opponentMove, boardSize);
+            ponderHit = sameMove(move, expectedReply);
+
+            // A wrong guess is useless, stop it now so it doesn't slow down the opponent's side of the game
+            if(!ponderHit){
+                stopPondering();
+            }
+        }
+
+        gameBoard.update(opponentMove, opponentTurn);
+    }
+
+    /**
+     * Search the position after the expected reply on a copy of the board until the reply arrives
+     * @param reply Reply of the opponent from the principal variation, in array coordinates
+     * @param turn Name of the player's turn. B for black and W for white
+     */
+    private void startPondering(Move reply, String turn){
+        String opponentTurn = BitBoard.opponentTurn(turn);
+        GameBoard ponderBoard = new GameBoard(gameBoard);
+        if(ponderBoard.isIllegalMove(reply.x1, reply.y1)){
+            return;
+        }
+        ponderBoard.play(reply.x1, reply.y1, opponentTurn);
+        if(ponderBoard.isIllegalMove(reply.x2, reply.y2)){
+            return;
+        }
+        ponderBoard.play(reply.x2, reply.y2, opponentTurn);
+
+        // Nothing to search after a reply that ends the game
+        if(ponderBoard.isGameOver()){
+            return;
+        }
+
+        expectedReply = reply;
+        ponderHit = false;
+        pondering = engine.ponder(ponderBoard, turn, maxDepth, maxTimePerMove);
+    }
+
+    /**
+     * Stop pondering and end the threads of the engine, once the game is over
+     */
+    void close(){
+        stopPondering();
+        engine.close();
+    }
+
+    private void stopPondering(){
+        if(pondering != null){
+            engine.stopSearch();
+            engine.finishPonder(pondering, 0);
+            pondering = null;
+        }
+    }
+
+    /**
+     * Moves are the same no matter which of the two stones is played first
+     */
+    private static boolean sameMove(Move move, Move other){
+        boolean sameOrder = move.x1 == other.x1 && move.y1 == other.y1 && move.x2 == other.x2 && move.y2 == other.y2;
+        boolean swapped = move.x1 == other.x2 && move.y1 == other.y2 && move.x2 == other.x1 && move.y2 == other.y1;
+        return sameOrder || swapped;
+    }
+
 }
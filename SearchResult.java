@@ -0,0 +1,32 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of one search by the Engine. All moves are in array coordinates
+ */
+class SearchResult {
+
+    final Move bestMove;
+    final int score;
+    final List<Move> principalVariation;
+    final int depth;
+    final long nodes;
+    final SearchStats stats;
+
+    /**
+     * @param bestMove Two stones to play, null if the search was stopped before it found any
+     * @param score Score of the position for the player to move
+     * @param principalVariation Best line found, starting with bestMove and alternating players every move
+     * @param depth Depth in turns of the last completed iteration
+     * @param nodes Nodes searched by all threads
+     * @param stats Counters of the thread the move came from
+     */
+    SearchResult(Move bestMove, int score, List<Move> principalVariation, int depth, long nodes, SearchStats stats){
+        this.bestMove = bestMove;
+        this.score = score;
+        this.principalVariation = Collections.unmodifiableList(principalVariation);
+        this.depth = depth;
+        this.nodes = nodes;
+        this.stats = stats;
+    }
+}
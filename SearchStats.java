@@ -0,0 +1,137 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Counters for the work done by one search thread. Every counter is a plain field incremented by the thread that
+ * owns it, so they are cheap enough to always keep on. Read them after the search is done
+ */
+class SearchStats {
+
+    // Nodes visited, positions evaluated and cutoffs from the pair loops and from the transposition table
+    long nodes;
+    long leaves;
+    long cutoffs;
+    long firstMoveCutoffs;
+    long tableCutoffs;
+
+    // Leaves looked up in the evaluation cache and how many of them it had, both 0 when the search has no cache
+    long cacheProbes;
+    long cacheHits;
+
+    // Null window searches that had to be repeated with the full window, and iterations repeated because the
+    // score fell outside the aspiration window
+    long researches;
+    long aspirationResearches;
+
+    // Nodes and nanoseconds used by every completed iteration up to and including its depth, indexed by depth
+    private long[] iterationNodes = new long[0];
+    private long[] iterationNanos = new long[0];
+    private int deepestIteration;
+
+    /**
+     * Clear the counters for a new search
+     * @param maxDepth Deepest iteration the search can run
+     */
+    void reset(int maxDepth){
+        nodes = 0;
+        leaves = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        tableCutoffs = 0;
+        cacheProbes = 0;
+        cacheHits = 0;
+        researches = 0;
+        aspirationResearches = 0;
+
+        if(iterationNodes.length <= maxDepth){
+            iterationNodes = new long[maxDepth + 1];
+            iterationNanos = new long[maxDepth + 1];
+        } else {
+            Arrays.fill(iterationNodes, 0);
+            Arrays.fill(iterationNanos, 0);
+        }
+        deepestIteration = 0;
+    }
+
+    /**
+     * @return A copy that later searches with these counters do not change
+     */
+    SearchStats copy(){
+        SearchStats copy = new SearchStats();
+        copy.nodes = nodes;
+        copy.leaves = leaves;
+        copy.cutoffs = cutoffs;
+        copy.firstMoveCutoffs = firstMoveCutoffs;
+        copy.tableCutoffs = tableCutoffs;
+        copy.cacheProbes = cacheProbes;
+        copy.cacheHits = cacheHits;
+        copy.researches = researches;
+        copy.aspirationResearches = aspirationResearches;
+        copy.iterationNodes = iterationNodes.clone();
+        copy.iterationNanos = iterationNanos.clone();
+        copy.deepestIteration = deepestIteration;
+        return copy;
+    }
+
+    /**
+     * Record an iteration that searched every move
+     * @param depth Depth of the iteration
+     * @param nanos Time the iteration took
+     * @param nodesBefore Value of nodes when the iteration started
+     */
+    void iterationDone(int depth, long nanos, long nodesBefore){
+        iterationNodes[depth] = nodes - nodesBefore;
+        iterationNanos[depth] = nanos;
+        deepestIteration = depth;
+    }
+
+    /**
+     * @return Part of the cutoffs found by the first pair searched, 1 is perfect move ordering
+     */
+    double firstMoveCutoffRate(){
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Growth in nodes from the second deepest to the deepest completed iteration, how many times more work one
+     * more turn of depth costs
+     * @return The effective branching factor or 0 if fewer than two iterations completed
+     */
+    double effectiveBranchingFactor(){
+        if(deepestIteration < 2 || iterationNodes[deepestIteration - 1] == 0){
+            return 0;
+        }
+        return (double) iterationNodes[deepestIteration] / iterationNodes[deepestIteration - 1];
+    }
+
+    /**
+     * @param depth Depth of the iteration
+     * @return Milliseconds the iteration took or 0 if it did not complete
+     */
+    long iterationMillis(int depth){
+        return depth < iterationNanos.length ? iterationNanos[depth] / 1000000L : 0;
+    }
+
+    /**
+     * One line summary for the log
+     */
+    @Override
+    public String toString(){
+        StringBuilder iterations = new StringBuilder();
+        for(int depth=1; depth<=deepestIteration; depth++){
+            if(iterationNanos[depth] == 0 && iterationNodes[depth] == 0){
+                continue;
+            }
+            if(iterations.length() > 0){
+                iterations.append(' ');
+            }
+            iterations.append(depth).append(':').append(iterationMillis(depth)).append("ms");
+        }
+
+        return String.format(Locale.ROOT, "nodes %d, leaves %d (cache hits %d of %d probes), cutoffs %d "
+                        + "(%.0f%% first move), table cutoffs %d, re-searches %d (%d aspiration), EBF %.1f, "
+                        + "iterations [%s]", nodes, leaves, cacheHits, cacheProbes, cutoffs,
+                100 * firstMoveCutoffRate(), tableCutoffs, researches, aspirationResearches,
+                effectiveBranchingFactor(), iterations);
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The 8 symmetries of the square board: the 4 rotations, each with and without a mirror. A position and its
+ * rotations and reflections play the same, so results for one can be used for all of them. Tiles are y * boardSize + x
+ */
+class Symmetry {
+
+    static final int COUNT = 8;
+    static final int IDENTITY = 0;
+
+    // Symmetry that undoes each symmetry. Rotating a quarter turn one way is undone by a quarter turn the other way,
+    // every other symmetry undoes itself
+    private static final int[] INVERSE = {0, 3, 2, 1, 4, 5, 6, 7};
+
+    // Tile every tile moves to under each symmetry only depends on the board size so they are shared by every board
+    private static final Map<Integer, int[][]> TABLES = new ConcurrentHashMap<>();
+
+    /**
+     * Where every tile goes under each symmetry
+     * @param boardSize Size of the board
+     * @return Tiles indexed by [symmetry][tile]
+     */
+    static int[][] table(int boardSize){
+        return TABLES.computeIfAbsent(boardSize, key -> {
+            int last = boardSize - 1;
+            int[][] table = new int[COUNT][boardSize * boardSize];
+
+            for(int y=0; y<boardSize; y++){
+                for(int x=0; x<boardSize; x++){
+                    int tile = y * boardSize + x;
+                    table[0][tile] = tile;
+                    table[1][tile] = x * boardSize + (last - y);
+                    table[2][tile] = (last - y) * boardSize + (last - x);
+                    table[3][tile] = (last - x) * boardSize + y;
+                    table[4][tile] = y * boardSize + (last - x);
+                    table[5][tile] = (last - y) * boardSize + x;
+                    table[6][tile] = x * boardSize + y;
+                    table[7][tile] = (last - x) * boardSize + (last - y);
+                }
+            }
+            return table;
+        });
+    }
+
+    /**
+     * @param symmetry One of the COUNT symmetries
+     * @return The symmetry that undoes it
+     */
+    static int inverse(int symmetry){
+        return INVERSE[symmetry];
+    }
+
+    /**
+     * Move a pair of stones packed as first tile << 16 | second tile, AlphaBeta.NO_TILE stays as it is
+     * @param pair The pair
+     * @param symmetry One of the COUNT symmetries
+     * @param boardSize Size of the board
+     * @return The pair after the symmetry
+     */
+    static int transformPair(int pair, int symmetry, int boardSize){
+        int[] tiles = table(boardSize)[symmetry];
+        int first = pair >>> 16;
+        int second = pair & 0xFFFF;
+        return (tiles[first] << 16) | (second == AlphaBeta.NO_TILE ? second : tiles[second]);
+    }
+}
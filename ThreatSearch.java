@@ -0,0 +1,402 @@
+import java.util.Arrays;
+
+/**
+ * Threat space search for forced wins. A threat is a window of six tiles with four or more of the attacker's stones
+ * and none of the defender's, so the attacker completes six next turn unless it is blocked. The attacker only plays
+ * pairs that create threats which need both of the defender's stones to block, and the defender only plays the pairs
+ * that block all of them. Only looking at these moves lets the search see forced wins many turns deep
+ */
+class ThreatSearch {
+
+    static final int NO_WIN = -1;
+
+    private final GameBoard gameBoard;
+    private final BitBoard board;
+    private final int boardSize;
+
+    private long deadline;
+    private boolean timeUp;
+    long nodes;
+
+    // Number of attacker turns, including the one completing six, of the win found by the last call to findWin
+    int winTurns;
+
+    // Buffers for every number of turns left, attack() and defend() recurse on fewer turns so each level keeps its
+    // own and no node allocates. A threat is its two empty tiles, the second is NO_WIN if it only has one
+    private int[][] pairBuffers = new int[0][0];
+    private int[][] threatBuffers = new int[0][0];
+    private int[][] blockBuffers = new int[0][0];
+
+    // Empty tiles of the window immediateWin() is looking at
+    private final int[] windowTiles = new int[6];
+
+    ThreatSearch(GameBoard gameBoard){
+        this.gameBoard = gameBoard;
+        this.board = gameBoard.board;
+        this.boardSize = gameBoard.boardSize;
+    }
+
+    /**
+     * Look for a sequence of threats that wins no matter how the defender blocks
+     * @param turn Name of the attacker. B for black and W for white
+     * @param maxThreats Most turns of threats the attacker can play before completing six
+     * @param deadline System.nanoTime() at which the search has to give up
+     * @return The first pair of the win packed as first tile << 16 | second tile or NO_WIN
+     */
+    int findWin(String turn, int maxThreats, long deadline){
+        this.deadline = deadline;
+        timeUp = false;
+        nodes = 0;
+        ensureBuffers(maxThreats);
+
+        // Search shallow wins first so the quickest one is found
+        for(int threats=0; threats<=maxThreats; threats++){
+            int win = attack(turn, threats);
+            if(win != NO_WIN){
+                winTurns = threats + 1;
+                return win;
+            }
+            if(timeUp){
+                break;
+            }
+        }
+        return NO_WIN;
+    }
+
+    /**
+     * Attacker to move
+     * @param turn Name of the attacker
+     * @param turnsLeft Turns of threats the attacker can still play before completing six
+     * @return The winning pair or NO_WIN
+     */
+    private int attack(String turn, int turnsLeft){
+        if(++nodes % 256 == 0 && System.nanoTime() > deadline){
+            timeUp = true;
+        }
+        if(timeUp){
+            return NO_WIN;
+        }
+
+        int attacker = BitBoard.colour(turn);
+
+        // A threat on the board already means the attacker can complete six this turn
+        int win = immediateWin(attacker);
+        if(win != NO_WIN || turnsLeft == 0){
+            return win;
+        }
+
+        // A threat of the defender has to be answered, that is not a forcing sequence any more
+        if(immediateWin(1 - attacker) != NO_WIN){
+            return NO_WIN;
+        }
+
+        int[] pairs = pairBuffers[turnsLeft];
+        int pairCount = threatPairs(attacker, pairs);
+        for(int i=0; i<pairCount; i++){
+            int pair = pairs[i];
+            int first = pair >>> 16;
+            int second = pair & 0xFFFF;
+
+            gameBoard.play(first, turn);
+            gameBoard.play(second, turn);
+            boolean wins = defend(turn, first, second, turnsLeft);
+            gameBoard.undo();
+            gameBoard.undo();
+
+            if(wins){
+                return pair;
+            }
+            if(timeUp){
+                break;
+            }
+        }
+        return NO_WIN;
+    }
+
+    /**
+     * Defender to move after the attacker played first and second
+     * @param turn Name of the attacker
+     * @param first Tile of the attacker's first stone
+     * @param second Tile of the attacker's second stone
+     * @param turnsLeft Turns of threats the attacker could play, including the one just played
+     * @return true if the attacker wins against every block
+     */
+    private boolean defend(String turn, int first, int second, int turnsLeft){
+        int attacker = BitBoard.colour(turn);
+        String defender = BitBoard.opponentTurn(turn);
+
+        // Only windows through the new stones can be new threats, older ones were ruled out before
+        int[] threats = threatBuffers[turnsLeft];
+        int threatCount = collectThreats(attacker, first, threats, 0);
+        threatCount = collectThreats(attacker, second, threats, threatCount);
+        if(threatCount == 0){
+            return false;
+        }
+
+        int[] blocks = blockBuffers[turnsLeft];
+        int blockCount = 0;
+        for(int i=0; i<2 * threatCount; i++){
+            int tile = threats[i];
+            if(tile != NO_WIN && !contains(blocks, blockCount, tile)){
+                blocks[blockCount++] = tile;
+            }
+        }
+
+        // If one stone blocks everything the defender has a free stone, so it is not forcing
+        for(int i=0; i<blockCount; i++){
+            if(blocksAll(threats, threatCount, blocks[i], blocks[i])){
+                return false;
+            }
+        }
+
+        for(int i=0; i<blockCount; i++){
+            for(int j=i+1; j<blockCount; j++){
+                if(!blocksAll(threats, threatCount, blocks[i], blocks[j])){
+                    continue;
+                }
+
+                int defence = legalOrder(blocks[i], blocks[j], defender);
+                if(defence == NO_WIN){
+                    continue;
+                }
+
+                gameBoard.play(defence >>> 16, defender);
+                gameBoard.play(defence & 0xFFFF, defender);
+                boolean wins = attack(turn, turnsLeft - 1) != NO_WIN;
+                gameBoard.undo();
+                gameBoard.undo();
+
+                if(!wins){
+                    return false;
+                }
+            }
+        }
+
+        // Every block lost, or there was none
+        return true;
+    }
+
+    /**
+     * Find a threat of the colour and the pair of stones that completes it
+     * @param colour BLACK or WHITE
+     * @return The pair completing six or NO_WIN
+     */
+    private int immediateWin(int colour){
+        for(int y=0; y<boardSize; y++){
+            for(int x=0; x<boardSize; x++){
+                for(int direction=0; direction<4; direction++){
+                    int empties = windowEmpties(colour, x, y, direction, 4, windowTiles, 0);
+                    if(empties == -1){
+                        continue;
+                    }
+
+                    int first = windowTiles[0];
+                    int second = empties > 1 ? windowTiles[1] : anyEmptyTile(first);
+                    if(second == NO_WIN){
+                        continue;
+                    }
+
+                    int pair = legalOrder(first, second, BitBoard.turn(colour));
+                    if(pair != NO_WIN){
+                        return pair;
+                    }
+                }
+            }
+        }
+        return NO_WIN;
+    }
+
+    /**
+     * Every pair of empty tiles that turns a window with two or three of the attacker's stones into a threat
+     * @param attacker BLACK or WHITE
+     * @param pairs Buffer for the pairs, packed as first tile << 16 | second tile, in a legal order
+     * @return Number of pairs in the buffer
+     */
+    private int threatPairs(int attacker, int[] pairs){
+        String turn = BitBoard.turn(attacker);
+
+        // Collect every pair with its smaller tile first, then sort them so each is only played once
+        int count = 0;
+        for(int y=0; y<boardSize; y++){
+            for(int x=0; x<boardSize; x++){
+                for(int direction=0; direction<4; direction++){
+                    int empties = windowEmpties(attacker, x, y, direction, 2, windowTiles, 0);
+                    for(int i=0; i<empties; i++){
+                        for(int j=i+1; j<empties; j++){
+                            int low = Math.min(windowTiles[i], windowTiles[j]);
+                            int high = Math.max(windowTiles[i], windowTiles[j]);
+                            pairs[count++] = (low << 16) | high;
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.sort(pairs, 0, count);
+
+        // The legal pairs are written over the sorted ones, never ahead of the one being read
+        int legalCount = 0;
+        int previous = NO_WIN;
+        for(int i=0; i<count; i++){
+            int sorted = pairs[i];
+            if(sorted == previous){
+                continue;
+            }
+            previous = sorted;
+
+            int pair = legalOrder(sorted >>> 16, sorted & 0xFFFF, turn);
+            if(pair != NO_WIN){
+                pairs[legalCount++] = pair;
+            }
+        }
+        return legalCount;
+    }
+
+    /**
+     * Add the empty tiles of every threat window of the colour that contains the tile
+     * @param colour BLACK or WHITE
+     * @param tile Tile the windows have to go through
+     * @param threats Two empty tiles for each threat
+     * @param count Number of threats already in the buffer
+     * @return Number of threats in the buffer
+     */
+    private int collectThreats(int colour, int tile, int[] threats, int count){
+        int x = tile % boardSize;
+        int y = tile / boardSize;
+
+        for(int direction=0; direction<4; direction++){
+            for(int offset=0; offset<6; offset++){
+                int empties = windowEmpties(colour, x - offset * BitBoard.DX[direction],
+                        y - offset * BitBoard.DY[direction], direction, 4, threats, 2 * count);
+                if(empties != -1){
+                    if(empties == 1){
+                        threats[2 * count + 1] = NO_WIN;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Find the empty tiles of a window of six if it has at least the given number of the colour's stones and no
+     * others
+     * @param colour BLACK or WHITE
+     * @param x The x coordinate of the first tile of the window
+     * @param y The y coordinate of the first tile of the window
+     * @param direction Index into BitBoard.DX and BitBoard.DY
+     * @param minStones Least number of stones of the colour
+     * @param empties Buffer the empty tiles are written to
+     * @param start Index in the buffer of the first empty tile
+     * @return Number of empty tiles or -1 if the window does not qualify
+     */
+    private int windowEmpties(int colour, int x, int y, int direction, int minStones, int[] empties, int start){
+        int dx = BitBoard.DX[direction];
+        int dy = BitBoard.DY[direction];
+        if(!inBounds(x, y) || !inBounds(x + 5 * dx, y + 5 * dy)){
+            return -1;
+        }
+
+        int stones = 0;
+        for(int i=0; i<6; i++){
+            int tileX = x + i * dx;
+            int tileY = y + i * dy;
+            if(board.hasStone(tileX, tileY, colour)){
+                stones++;
+            } else if(!board.isEmpty(tileX, tileY)){
+                return -1;
+            }
+        }
+        if(stones < minStones || stones == 6){
+            return -1;
+        }
+
+        int count = 0;
+        for(int i=0; i<6; i++){
+            int tileX = x + i * dx;
+            int tileY = y + i * dy;
+            if(board.isEmpty(tileX, tileY)){
+                empties[start + count++] = tileY * boardSize + tileX;
+            }
+        }
+        return count;
+    }
+
+    private boolean blocksAll(int[] threats, int threatCount, int first, int second){
+        for(int i=0; i<2 * threatCount; i += 2){
+            boolean blocked = threats[i] == first || threats[i] == second
+                    || (threats[i + 1] != NO_WIN && (threats[i + 1] == first || threats[i + 1] == second));
+            if(!blocked){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] tiles, int count, int tile){
+        for(int i=0; i<count; i++){
+            if(tiles[i] == tile){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find an order the two stones can be played in, every stone has to be next to one already on the board
+     * @param first One tile
+     * @param second The other tile
+     * @param turn Name of the player placing the stones
+     * @return The pair in a legal order or NO_WIN if neither order is legal
+     */
+    private int legalOrder(int first, int second, String turn){
+        if(isLegalAfter(first, second, turn)){
+            return (first << 16) | second;
+        } else if(isLegalAfter(second, first, turn)){
+            return (second << 16) | first;
+        }
+        return NO_WIN;
+    }
+
+    private boolean isLegalAfter(int first, int second, String turn){
+        int firstX = first % boardSize;
+        int firstY = first / boardSize;
+        if(gameBoard.isIllegalMove(firstX, firstY)){
+            return false;
+        }
+
+        gameBoard.play(firstX, firstY, turn);
+        boolean legal = !gameBoard.isIllegalMove(second);
+        gameBoard.undo();
+        return legal;
+    }
+
+    private int anyEmptyTile(int except){
+        for(int i=0; i<gameBoard.availableMoves.size(); i++){
+            int tile = gameBoard.availableMoves.get(i);
+            if(tile != except){
+                return tile;
+            }
+        }
+        return NO_WIN;
+    }
+
+    /**
+     * Make sure every level of the search has its buffers, large enough for any position on the board
+     * @param maxThreats Most turns of threats the search will play
+     */
+    private void ensureBuffers(int maxThreats){
+        if(pairBuffers.length <= maxThreats){
+            int tileCount = boardSize * boardSize;
+
+            // Every window can have four empty tiles and six pairs of them, a stone is in 24 windows
+            pairBuffers = new int[maxThreats + 1][4 * tileCount * 6];
+            threatBuffers = new int[maxThreats + 1][2 * 2 * 4 * 6];
+            blockBuffers = new int[maxThreats + 1][2 * 2 * 4 * 6];
+        }
+    }
+
+    private boolean inBounds(int x, int y){
+        return (x > -1 && x < boardSize && y > -1 && y < boardSize);
+    }
+}
@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+Headless self-play between two computer players, A and B, that only differ in their search settings
+
+Every opening is played twice with the colours swapped so neither player profits from a lucky opening or from
+moving first. Games run in parallel and the result of each game is printed as it finishes, followed by the win,
+loss and draw counts, the Elo difference of A over B and the number of games played per hour
+
+Input arguments
+1. Size of the board
+2. Number of games, rounded up to an even number
+3. Milliseconds per move for player A
+4. Milliseconds per move for player B
+5. (optional) Deepest search in turns for both players, defaults to 10
+6. (optional) Random turns played before the players take over, defaults to 1
+7. (optional) Number of games played at the same time, defaults to the number of cores
+8. (optional) Seed for the random openings, defaults to 1
+
+Run with -Dconnect6.record=<file> to add every game to a game record file
+
+Example  "java Tournament 13 100 200 100"
+*/
+
+
+class Tournament {
+
+    private static final int DEFAULT_MAX_DEPTH = 10;
+    private static final int DEFAULT_OPENING_TURNS = 1;
+    private static final int DEFAULT_SEED = 1;
+    private static final String RECORD_FILE = System.getProperty("connect6.record");
+
+    // Every player searches on one thread, the parallelism comes from playing several games at once
+    private static final int SEARCH_THREADS = 1;
+
+    // Results of a game for player A
+    private static final int A_WINS = 0;
+    private static final int B_WINS = 1;
+    private static final int DRAW = 2;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        // Parse input arguments
+        int boardSize = Integer.parseInt(args[0]);
+        int games = Integer.parseInt(args[1]);
+        games += games % 2;
+        int timeA = Integer.parseInt(args[2]);
+        int timeB = Integer.parseInt(args[3]);
+        int maxDepth = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MAX_DEPTH;
+        int openingTurns = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_OPENING_TURNS;
+        int parallelGames = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 7 ? Long.parseLong(args[7]) : DEFAULT_SEED;
+
+        System.out.println("Playing " + games + " games on a " + boardSize + "x" + boardSize + " board, A " + timeA
+                + "ms per move, B " + timeB + "ms per move, " + parallelGames + " at a time");
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, parallelGames));
+        CompletionService<int[]> finished = new ExecutorCompletionService<>(pool);
+        long start = System.nanoTime();
+
+        for(int game=0; game<games; game++){
+            int gameNumber = game;
+            finished.submit(() -> new int[]{gameNumber,
+                    playGame(gameNumber, boardSize, timeA, timeB, maxDepth, openingTurns, seed)});
+        }
+
+        int[] results = new int[3];
+        int[] aWinsByColour = new int[2];
+        for(int i=0; i<games; i++){
+            int[] result;
+            try {
+                result = finished.take().get();
+            } catch (ExecutionException e) {
+                pool.shutdownNow();
+                throw new RuntimeException(e.getCause());
+            }
+
+            int game = result[0];
+            int outcome = result[1];
+            boolean aIsWhite = aIsWhite(game);
+            results[outcome]++;
+            if(outcome == A_WINS){
+                aWinsByColour[aIsWhite ? 1 : 0]++;
+            }
+
+            System.out.println("Game " + (game + 1) + " (A " + (aIsWhite ? "white" : "black") + "): "
+                    + (outcome == A_WINS ? "A wins" : outcome == B_WINS ? "B wins" : "draw"));
+        }
+        pool.shutdown();
+
+        double hours = (System.nanoTime() - start) / 3.6e12;
+        printSummary(results, aWinsByColour, games / hours);
+    }
+
+    /**
+     * Play one game between A and B
+     * @param game Number of the game, games 2k and 2k+1 share an opening with the colours swapped
+     * @param boardSize Size of the board
+     * @param timeA Milliseconds per move for A
+     * @param timeB Milliseconds per move for B
+     * @param maxDepth Deepest search in turns for both
+     * @param openingTurns Random turns played before the players take over
+     * @param seed Seed of the random openings
+     * @return A_WINS, B_WINS or DRAW
+     */
+    private static int playGame(int game, int boardSize, int timeA, int timeB, int maxDepth, int openingTurns,
+                                long seed){
+        GameBoard gameBoard = new GameBoard(boardSize);
+        boolean aIsWhite = aIsWhite(game);
+        Player white = new Player("White", boardSize, aIsWhite ? timeA : timeB, SEARCH_THREADS, maxDepth);
+        Player black = new Player("Black", boardSize, aIsWhite ? timeB : timeA, SEARCH_THREADS, maxDepth);
+
+        // The players' search threads end with the game however it ends
+        try {
+            // White plays the first turn after the black stone in the middle
+            String turn = "W";
+            Random random = new Random(seed * 31 + game / 2);
+            List<Move> turns = new ArrayList<>();
+
+            for(int i=0; i<openingTurns && !gameBoard.isGameOver(); i++){
+                Move move = randomMove(gameBoard, random);
+                if(move == null){
+                    break;
+                }
+                gameBoard.update(move, turn);
+                turns.add(move);
+                white.gameBoard.update(move, turn);
+                black.gameBoard.update(move, turn);
+                turn = BitBoard.opponentTurn(turn);
+            }
+
+            while(!gameBoard.isGameOver()){
+                Player mover = turn.equals("W") ? white : black;
+                Player opponent = turn.equals("W") ? black : white;
+                Move move = mover.getMove(turn);
+
+                // An illegal move loses the game
+                if(gameBoard.isIllegalMove(move)){
+                    recordGame(new GameRecord(boardSize, turns));
+                    return winner(BitBoard.opponentTurn(turn), aIsWhite);
+                }
+
+                gameBoard.update(move, turn);
+                turns.add(move);
+                opponent.gameBoard.update(move, turn);
+                turn = BitBoard.opponentTurn(turn);
+            }
+            recordGame(new GameRecord(boardSize, turns));
+
+            if(gameBoard.board.hasSixInARow(BitBoard.WHITE)){
+                return winner("W", aIsWhite);
+            } else if(gameBoard.board.hasSixInARow(BitBoard.BLACK)){
+                return winner("B", aIsWhite);
+            }
+            return DRAW;
+        } finally {
+            white.close();
+            black.close();
+        }
+    }
+
+    /**
+     * Add a game to the game record file if one was given
+     * @param record The legal turns of the game
+     */
+    private static void recordGame(GameRecord record){
+        if(RECORD_FILE != null){
+            try {
+                record.append(Paths.get(RECORD_FILE));
+            } catch (IOException e) {
+                System.out.println("Could not record game: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Pick two random stones next to the stones on the board
+     * @param gameBoard The board being played
+     * @param random Source of the opening
+     * @return The move in display coordinates or null if there is no legal one
+     */
+    private static Move randomMove(GameBoard gameBoard, Random random){
+        int boardSize = gameBoard.boardSize;
+        if(gameBoard.availableMoves.size() < 2){
+            return null;
+        }
+
+        int first = gameBoard.availableMoves.get(random.nextInt(gameBoard.availableMoves.size()));
+        gameBoard.play(first % boardSize, first / boardSize, "B");
+        int second = gameBoard.availableMoves.get(random.nextInt(gameBoard.availableMoves.size()));
+        gameBoard.undo();
+
+        Coordinates firstMove = Coordinates.toDisplayCoordinates(
+                new Coordinates(first % boardSize, first / boardSize), boardSize);
+        Coordinates secondMove = Coordinates.toDisplayCoordinates(
+                new Coordinates(second % boardSize, second / boardSize), boardSize);
+        return new Move(firstMove.x, firstMove.y, secondMove.x, secondMove.y);
+    }
+
+    private static boolean aIsWhite(int game){
+        return game % 2 == 0;
+    }
+
+    private static int winner(String turn, boolean aIsWhite){
+        return turn.equals("W") == aIsWhite ? A_WINS : B_WINS;
+    }
+
+    /**
+     * Output the totals, the Elo difference of A over B with its 95% error margin and the games per hour
+     * @param results Number of games by A_WINS, B_WINS and DRAW
+     * @param aWinsByColour Wins of A as black and as white
+     * @param gamesPerHour Games finished per hour
+     */
+    private static void printSummary(int[] results, int[] aWinsByColour, double gamesPerHour){
+        int games = results[A_WINS] + results[B_WINS] + results[DRAW];
+        double score = (results[A_WINS] + 0.5 * results[DRAW]) / games;
+
+        // Standard deviation of the score of one game, used for the error margin of the Elo difference
+        double winRate = (double) results[A_WINS] / games;
+        double drawRate = (double) results[DRAW] / games;
+        double deviation = Math.sqrt(Math.max(0, winRate + 0.25 * drawRate - score * score) / games);
+        double margin = (elo(Math.min(0.9999, score + 1.96 * deviation))
+                - elo(Math.max(0.0001, score - 1.96 * deviation))) / 2;
+
+        System.out.println();
+        System.out.format("A wins %d (%d as black, %d as white), B wins %d, draws %d%n", results[A_WINS],
+                aWinsByColour[0], aWinsByColour[1], results[B_WINS], results[DRAW]);
+        System.out.format("Score of A %.1f%%, Elo difference %+.0f +/- %.0f%n", 100 * score, elo(score), margin);
+        System.out.format("%.0f games per hour%n", gamesPerHour);
+    }
+
+    /**
+     * Elo difference that gives the expected score, clamped so a perfect score stays finite
+     * @param score Expected score of A from 0 to 1
+     * @return Elo of A minus Elo of B
+     */
+    private static double elo(double score){
+        double clamped = Math.min(0.9999, Math.max(0.0001, score));
+        return 400 * Math.log10(clamped / (1 - clamped));
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.Arrays;
+
+/**
+ * Fixed size hash table of search results keyed by the Zobrist hash of a position. Each entry stores the depth
+ * searched, the type of bound, the score and the best move packed into one long. Positions reached through a
+ * different move order can then reuse an earlier result instead of being searched again
+ */
+class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER_BOUND = 1;
+    static final int UPPER_BOUND = 2;
+
+    static final int NO_MOVE = 0x7FFF;
+
+    // Largest board whose tiles all fit the 15 bit move field below NO_MOVE
+    static final int MAX_BOARD_SIZE = 181;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    // Incremented for every new search so entries from old searches are replaced first
+    private int age;
+
+    /**
+     * @param size Number of entries, rounded down to a power of two
+     */
+    TranspositionTable(int size){
+        int capacity = Integer.highestOneBit(Math.max(size, 1));
+        this.keys = new long[capacity];
+        this.entries = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Start a new search. Entries from earlier searches stay usable but are the first to be replaced
+     */
+    void newSearch(){
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Look up a position
+     * @param key Hash of the position
+     * @return The packed entry or 0 if the position is not stored
+     */
+    long probe(long key){
+        int slot = (int) key & mask;
+        long entry = entries[slot];
+
+        // The key is stored xor the entry so a torn write from another thread never matches
+        if(entry != 0 && (keys[slot] ^ entry) == key){
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Store a search result. Deeper results and results from the current search are kept over shallower or older
+     * ones in the same slot
+     * @param key Hash of the position
+     * @param depth Depth searched below the position
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param score Score of the position
+     * @param move Tile index (y * boardSize + x) of the best move or NO_MOVE
+     */
+    void store(long key, int depth, int bound, int score, int move){
+        int slot = (int) key & mask;
+        long old = entries[slot];
+
+        boolean samePosition = old != 0 && (keys[slot] ^ old) == key;
+        boolean oldSearch = age(old) != age;
+        if(old != 0 && !samePosition && !oldSearch && depth(old) > depth){
+            return;
+        }
+
+        // Keep the move we already know about if this result did not find one
+        if(move == NO_MOVE && samePosition){
+            move = move(old);
+        }
+
+        long entry = ((long) score << 32)
+                | ((long) (move & 0x7FFF) << 16)
+                | ((long) (age & 0xFF) << 8)
+                | ((long) (bound & 0x3) << 6)
+                | (Math.min(depth, 63) & 0x3F)
+                | (1L << 31); // never 0 so an empty slot can be told apart
+        entries[slot] = entry;
+        keys[slot] = key ^ entry;
+    }
+
+    void clear(){
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+    }
+
+    static int score(long entry){
+        return (int) (entry >> 32);
+    }
+
+    static int move(long entry){
+        return (int) (entry >>> 16) & 0x7FFF;
+    }
+
+    static int bound(long entry){
+        return (int) (entry >>> 6) & 0x3;
+    }
+
+    static int depth(long entry){
+        return (int) entry & 0x3F;
+    }
+
+    private static int age(long entry){
+        return (int) (entry >>> 8) & 0xFF;
+    }
+}
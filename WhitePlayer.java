@@ -1,11 +1,11 @@
 class WhitePlayer extends Player {
 
-    WhitePlayer(String playerName, int boardSize, int maxTimePerMove){
-       super(playerName, boardSize);
+    WhitePlayer(String playerName, int boardSize, int maxTimePerMove, int threads){
+       super(playerName, boardSize, maxTimePerMove, threads);
     }
 
     public void update(Move opponentMove){
-        gameBoard.update(opponentMove, "B");
+        opponentMoved(opponentMove, "B");
     }
 
     public Move getMove(){
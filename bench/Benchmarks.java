@@ -0,0 +1,199 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+Micro benchmarks for the board, the evaluation and the search
+
+Runs every benchmark on a reproducible mid-game position for board sizes 7, 13 and 19 and prints the time per
+operation, operations per second, nodes per second for the search and the bytes allocated per operation.
+Each benchmark gets warmup iterations first so the JIT has compiled it before anything is measured
+
+Input arguments (all optional)
+1. Depth in turns of the fixed depth search, defaults to 2
+2. Milliseconds per measured iteration, defaults to 1000
+
+Example  "mvn -B -Pbench verify"  or  "java -cp target/classes:target/bench-classes Benchmarks 2 1000"
+*/
+
+
+class Benchmarks {
+
+    private static final int[] BOARD_SIZES = {7, 13, 19};
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final int TABLE_SIZE = 1 << 16;
+    private static final int CACHE_SIZE = 1 << 16;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are added here so the JIT can't throw away the work being measured
+    private static volatile long sink;
+
+    private static int searchDepth = 2;
+    private static long iterationNanos = 1_000_000_000L;
+
+    public static void main(String[] args){
+        if(args.length > 0){
+            searchDepth = Integer.parseInt(args[0]);
+        }
+        if(args.length > 1){
+            iterationNanos = Long.parseLong(args[1]) * 1_000_000L;
+        }
+
+        System.out.format("%-24s %5s %14s %14s %14s %12s%n", "Benchmark", "Size", "ns/op", "ops/s", "nodes/s",
+                "B/op");
+
+        for(int boardSize: BOARD_SIZES){
+            GameBoard gameBoard = midGamePosition(boardSize);
+            // White plays the first full turn after the black stone in the middle
+            String turn = (gameBoard.board.stoneCount - 1) / 2 % 2 == 0 ? "W" : "B";
+
+            run("EvaluateBoard.maxInARow", boardSize, () -> {
+                sink += EvaluateBoard.maxInARow(gameBoard.board, "B") + EvaluateBoard.maxInARow(gameBoard.board, "W");
+                return 0;
+            });
+
+            // Two stones played and taken back, the board update the search does for every pair
+            int first = gameBoard.availableMoves.get(0);
+            int second = gameBoard.availableMoves.get(gameBoard.availableMoves.size() - 1);
+            run("GameBoard.play/undo", boardSize, () -> {
+                gameBoard.play(first % boardSize, first / boardSize, turn);
+                gameBoard.play(second % boardSize, second / boardSize, turn);
+                sink += gameBoard.availableMoves.size() + gameBoard.hash;
+                gameBoard.undo();
+                gameBoard.undo();
+                return 0;
+            });
+
+            run("GameBoard.isGameOver", boardSize, () -> {
+                sink += gameBoard.isGameOver() ? 1 : 0;
+                return 0;
+            });
+
+            // Every search starts from an empty table so each one does the same work
+            TranspositionTable table = new TranspositionTable(TABLE_SIZE);
+            AlphaBeta search = new AlphaBeta(table, new AtomicBoolean());
+            run("AlphaBeta depth " + searchDepth, boardSize, () -> {
+                table.clear();
+                sink += search.iterativeDeepening(gameBoard, turn, searchDepth, searchDepth, Long.MAX_VALUE);
+                return search.stats.nodes;
+            });
+
+            // The same search without the null windows and aspiration windows, to see what they save
+            AlphaBeta plain = new AlphaBeta(table, new AtomicBoolean());
+            plain.principalVariationSearch = false;
+            plain.aspirationWindow = 0;
+            run("AlphaBeta depth " + searchDepth + " plain", boardSize, () -> {
+                table.clear();
+                sink += plain.iterativeDeepening(gameBoard, turn, searchDepth, searchDepth, Long.MAX_VALUE);
+                return plain.stats.nodes;
+            });
+
+            // The same search with leaf evaluations cached, to see if the cache pays for its probes
+            EvaluationCache cache = new EvaluationCache(CACHE_SIZE);
+            AlphaBeta cached = new AlphaBeta(table, new AtomicBoolean(), cache);
+            run("AlphaBeta depth " + searchDepth + " cached", boardSize, () -> {
+                table.clear();
+                cache.clear();
+                sink += cached.iterativeDeepening(gameBoard, turn, searchDepth, searchDepth, Long.MAX_VALUE);
+                return cached.stats.nodes;
+            });
+        }
+    }
+
+    /**
+     * Something to measure, returns the number of search nodes it visited or 0
+     */
+    private interface Operation {
+        long run();
+    }
+
+    /**
+     * Time an operation and print one line of results
+     * @param name Name of the benchmark
+     * @param boardSize Size of the board
+     * @param operation The operation
+     */
+    private static void run(String name, int boardSize, Operation operation){
+        for(int i=0; i<WARMUP_ITERATIONS; i++){
+            iteration(operation);
+        }
+
+        long operations = 0;
+        long nodes = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for(int i=0; i<MEASURED_ITERATIONS; i++){
+            long[] result = iteration(operation);
+            operations += result[0];
+            nodes += result[1];
+            nanos += result[2];
+            bytes += result[3];
+        }
+
+        double seconds = nanos / 1e9;
+        String nodesPerSecond = nodes > 0 ? String.format(Locale.ROOT, "%.0f", nodes / seconds) : "-";
+        String bytesPerOperation = bytes < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f", (double) bytes / operations);
+
+        System.out.format(Locale.ROOT, "%-24s %5d %14.1f %14.0f %14s %12s%n", name, boardSize,
+                (double) nanos / operations, operations / seconds, nodesPerSecond, bytesPerOperation);
+    }
+
+    /**
+     * Run the operation until the iteration time is used up
+     * @return Operations, nodes, elapsed nanoseconds and allocated bytes (-1 if the JVM can't measure it)
+     */
+    private static long[] iteration(Operation operation){
+        long thread = Thread.currentThread().getId();
+        boolean measureAllocation = THREADS.isThreadAllocatedMemorySupported();
+        long allocatedBefore = measureAllocation ? THREADS.getThreadAllocatedBytes(thread) : 0;
+
+        long operations = 0;
+        long nodes = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do{
+            nodes += operation.run();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        } while(elapsed < iterationNanos);
+
+        long allocated = measureAllocation ? THREADS.getThreadAllocatedBytes(thread) - allocatedBefore : -1;
+        return new long[]{operations, nodes, elapsed, allocated};
+    }
+
+    /**
+     * Play random turns from a fixed seed until about a quarter of the board is filled, skipping any stone that
+     * would end the game so the position is always still being played
+     * @param boardSize Size of the board
+     * @return The position
+     */
+    private static GameBoard midGamePosition(int boardSize){
+        GameBoard gameBoard = new GameBoard(boardSize);
+        Random random = new Random(boardSize);
+        int stones = boardSize * boardSize / 4;
+
+        String turn = "W";
+        int stonesThisTurn = 0;
+        int attempts = 100 * stones;
+        for(int attempt=0; attempt<attempts && (gameBoard.board.stoneCount < stones || stonesThisTurn != 0); attempt++){
+            int tile = gameBoard.availableMoves.get(random.nextInt(gameBoard.availableMoves.size()));
+            gameBoard.play(tile % boardSize, tile / boardSize, turn);
+            if(gameBoard.board.maxInARow(BitBoard.colour(turn)) >= 5){
+                gameBoard.undo();
+                continue;
+            }
+
+            if(++stonesThisTurn == 2){
+                turn = BitBoard.opponentTurn(turn);
+                stonesThisTurn = 0;
+            }
+        }
+
+        // The position is a fixed starting point, the benchmarks never undo past it
+        return new GameBoard(gameBoard);
+    }
+}